@@ -1,6 +1,5 @@
 import static com.horstmann.adventofcode.Util.*;
 import com.horstmann.adventofcode.*;
-import static java.util.stream.Collectors.*;
 
 void parse(Path path) throws IOException {
     machines = Files.lines(path).map(Machine::parse).toList();
@@ -24,10 +23,25 @@ record Machine(BitSet lightPattern, List<BitSet> buttons, List<Integer> joltages
     }
     
     int minimumCostLights() {
-        var costs = Graphs.dijkstraCosts(new BitSet(), 
-                s -> buttons.stream().map(b -> { var r = new BitSet(); r.or(s); r.xor(b); return r; }).collect(toSet()), 
-                (_, _) -> 1);
-        return costs.get(lightPattern);
+        // Pressing a button twice has no effect, so we want the smallest set of buttons 
+        // whose XOR is the light pattern. That is a linear system over GF(2).
+        var presses = GF2.minimumWeightSolution(buttons, lightPattern);
+        if (presses == null) throw new IllegalStateException("No button presses yield " + lightPattern);
+        return presses.cardinality();
+    }
+    
+    int minimumCostJoltages() {
+        // Button i is pressed k_i times. Counter j must reach joltage j.
+        var program = new IntegerProgram(buttons.size());
+        for (int j = 0; j < joltages.size(); j++) {
+            var coefficients = new long[buttons.size()];
+            for (int i = 0; i < buttons.size(); i++)
+                if (buttons.get(i).get(j)) coefficients[i] = 1;
+            program.addEquation(coefficients, joltages.get(j));
+        }
+        var presses = program.minimize();
+        if (presses == null) throw new IllegalStateException("No button presses yield " + joltages);
+        return (int) LongStream.of(presses).sum();
     }
     
     CharSequence z3program() {
@@ -90,26 +104,42 @@ record Machine(BitSet lightPattern, List<BitSet> buttons, List<Integer> joltages
 List<Machine> machines;
 
 Object part1() {
-    return machines.stream().mapToInt(Machine::minimumCostLights).sum();
+    return Batch.solve(machines, Machine::minimumCostLights)
+        .stream().mapToInt(Batch.Result::value).sum();
 }
 
-Object part2() throws Exception {
-    var z3program = machines.stream().map(Machine::z3program).collect(joining());
-    var output = OS.run(List.of("/usr/bin/z3", "-in"), z3program);
-    var result = Pattern.compile("\\(total (\\pN+)\\)")
-            .matcher(output)
-            .results()
-            .map(r -> r.group(1))
-            .mapToInt(Integer::parseInt)
-            .sum();
-    return result;
+Object part2() {
+    return Batch.solve(machines, Machine::minimumCostJoltages)
+        .stream().mapToInt(Batch.Result::value).sum();
 }
 
+Object part2WithZ3Sessions() throws Exception {
+    // Each program starts with (reset), so a z3 process can solve one machine after another
+    try (var pool = new OS.SessionPool(Runtime.getRuntime().availableProcessors(),
+            () -> new OS.Session(List.of("/usr/bin/z3", "-in"), "(echo \"done\")", "done"))) {
+        var total = Pattern.compile("\\(total (\\pN+)\\)");
+        return Batch.solveBlocking(machines, m -> {
+            String answer;
+            try {
+                answer = pool.query(m.z3program(), Duration.ofMinutes(1));
+            } catch (IOException | InterruptedException | TimeoutException ex) {
+                throw new RuntimeException(ex);
+            }
+            var matcher = total.matcher(answer);
+            if (!matcher.find()) throw new IllegalStateException("No solution for " + m);
+            return Integer.parseInt(matcher.group(1));
+        }).stream().mapToInt(Batch.Result::value).sum();
+    }
+}
+
+// Run with -Dz3 to solve part 2 with z3 instead of the integer program
+boolean z3 = System.getProperty("z3") != null;
+
 void main() throws Exception {
     parse(inputPath("a"));
     time(this::part1);
-    time(this::part2);
+    time(z3 ? this::part2WithZ3Sessions : this::part2);
     parse(inputPath("z"));
     time(this::part1);
-    time(this::part2);
+    time(z3 ? this::part2WithZ3Sessions : this::part2);
 }
@@ -13,20 +13,20 @@ void parse(Path path) throws IOException {
 }
 
 Object part1() {
-    var paths = Graphs.simplePaths("you", "out", neighbors::get);
-    return paths.size();
+    return Graphs.countSimplePaths("you", "out", neighbors::get);
 }
 
 Object part2() {
-    // By inspecting the dot output, the graph is a DAG
+    // By inspecting the dot output, the graph is a DAG. DagIndex throws an exception if it has a cycle.
     // IO.println(Graphs.dot("svr", n -> neighbors.computeIfAbsent(n, _ -> Set.of()), (_, _) -> null));
     Function<String, Set<String>> neighborFunction = n -> neighbors.computeIfAbsent(n, _ -> Set.of());
-    long c1 = Graphs.dagPathCount("svr", "fft", neighborFunction);
-    long c2 = Graphs.dagPathCount("fft", "dac", neighborFunction);
-    long c3 = Graphs.dagPathCount("dac", "out", neighborFunction);
-    long c4 = Graphs.dagPathCount("svr", "dac", neighborFunction);
-    long c5 = Graphs.dagPathCount("dac", "fft", neighborFunction);
-    long c6 = Graphs.dagPathCount("fft", "out", neighborFunction);
+    var dag = new DagIndex<String>("svr", neighborFunction);
+    long c1 = dag.pathCount("svr", "fft");
+    long c2 = dag.pathCount("fft", "dac");
+    long c3 = dag.pathCount("dac", "out");
+    long c4 = dag.pathCount("svr", "dac");
+    long c5 = dag.pathCount("dac", "fft");
+    long c6 = dag.pathCount("fft", "out");
     return c1 * c2 * c3 + c4 * c5 * c6; // One of the summands will be zero
 }
 
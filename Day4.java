@@ -7,28 +7,17 @@ void parse(Path path) throws IOException {
     grid = CharGrid.parse(path);
 }
 
-boolean accessible(Location loc) {
-    return grid.get(loc) == '@' && 
-            grid.allNeighbors(loc)
-            .stream()
-            .filter(l -> grid.get(l) == '@')
-            .count() < 4;
+boolean accessible(int cell) {
+    return grid.getChar(cell) == '@' && grid.countNeighbors(cell, '@') < 4;
 }
 
 Object part1() {
-    return grid.locations().filter(this::accessible).count();
+    return grid.cells().filter(this::accessible).count();
 }
 
 Object part2() {
-    int count = 0;
-    boolean done = false;
-    while (!done) {
-        var ls = grid.locations().filter(this::accessible).toList();
-        count += ls.size();
-        for (var l : ls) grid.put(l, ' ');
-        done = ls.size() == 0;
-    }
-    return count;
+    // After the first round, only the neighbors of removed rolls need to be checked again
+    return IntStream.of(grid.simulate(cell -> accessible(cell) ? ' ' : grid.getChar(cell))).sum();
 }
 
 void main() throws Exception {
@@ -48,18 +48,9 @@ Object part1() {
 }
 
 Object part2() {
-    // Compute weighted edges of complete graph
-    var edges = new PriorityQueue<Graphs.WeightedEdge<Point3>>();
-    for (int i = 0; i < points.size(); i++) {
-        for (int j = i + 1; j < points.size(); j++) {
-            var p = points.get(i);
-            var q = points.get(j);
-            edges.add(new Graphs.WeightedEdge<>(p, q, p.distanceSquared(q)));
-        }
-    }
-    var spanningTree = Graphs.kruskal(points, edges);
+    var spanningTree = Graphs.euclideanMst(points, Point3::x, Point3::y, Point3::z);
     var last = spanningTree.last();
-    return last.from().x() * last.to().x();
+    return (long) last.from().x() * last.to().x();
 }
 
 void main() throws Exception {
@@ -0,0 +1,110 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * Solves many independent problems in parallel. A fixed number of workers run in the common 
+ * fork-join pool. Each worker obtains its own scratch object, such as a reusable Dijkstra engine, 
+ * and then claims problems one at a time until none are left, so that long-running problems 
+ * don't hold up the others.
+ */
+public class Batch {
+    private Batch() {}
+
+    /**
+     * The solution of a problem.
+     * @param <T> the problem type
+     * @param <R> the solution type
+     * @param problem the problem
+     * @param value the solution
+     * @param elapsed the time that it took to solve the problem
+     */
+    public record Result<T, R>(T problem, R value, Duration elapsed) {}
+
+    /**
+     * Solves problems in parallel, with as many workers as there are processors.
+     * @param <T> the problem type
+     * @param <S> the type of the per-worker scratch object
+     * @param <R> the solution type
+     * @param problems the problems
+     * @param scratch produces a scratch object for each worker
+     * @param solver solves a problem, using the scratch object of the current worker
+     * @return the results, in the same order as the problems
+     */
+    public static <T, S, R> List<Result<T, R>> solve(List<T> problems, Supplier<S> scratch, BiFunction<S, T, R> solver) {
+        return solve(problems, scratch, solver, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Solves problems in parallel.
+     * @param <T> the problem type
+     * @param <S> the type of the per-worker scratch object
+     * @param <R> the solution type
+     * @param problems the problems
+     * @param scratch produces a scratch object for each worker
+     * @param solver solves a problem, using the scratch object of the current worker
+     * @param workers the number of workers
+     * @return the results, in the same order as the problems
+     */
+    public static <T, S, R> List<Result<T, R>> solve(List<T> problems, Supplier<S> scratch, BiFunction<S, T, R> solver, int workers) {
+        int n = problems.size();
+        @SuppressWarnings("unchecked") var results = (Result<T, R>[]) new Result<?, ?>[n];
+        var next = new AtomicInteger();
+        IntStream.range(0, Math.max(1, Math.min(workers, n))).parallel().forEach(_ -> {
+            S s = scratch.get();
+            int i;
+            while ((i = next.getAndIncrement()) < n) {
+                T problem = problems.get(i);
+                long start = System.nanoTime();
+                R value = solver.apply(s, problem);
+                results[i] = new Result<>(problem, value, Duration.ofNanos(System.nanoTime() - start));
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Solves problems whose solvers block, for example while waiting for an external process. 
+     * Each problem runs on its own virtual thread, so that the common fork-join pool isn't tied up.
+     * Limit the concurrency inside the solver, for example with an OS.SessionPool.
+     * @param <T> the problem type
+     * @param <R> the solution type
+     * @param problems the problems
+     * @param solver solves a problem
+     * @return the results, in the same order as the problems
+     * @throws CompletionException if a solver throws an exception that is not a RuntimeException
+     */
+    public static <T, R> List<Result<T, R>> solveBlocking(List<T> problems, Function<T, R> solver) {
+        var futures = new ArrayList<Future<Result<T, R>>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var problem : problems) {
+                futures.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    R value = solver.apply(problem);
+                    return new Result<>(problem, value, Duration.ofNanos(System.nanoTime() - start));
+                }));
+            }
+        }
+        var results = new ArrayList<Result<T, R>>();
+        for (var future : futures) {
+            if (future.state() == Future.State.FAILED) {
+                if (future.exceptionNow() instanceof RuntimeException ex) throw ex;
+                throw new CompletionException(future.exceptionNow());
+            }
+            results.add(future.resultNow());
+        }
+        return results;
+    }
+
+    /**
+     * Solves problems in parallel, with as many workers as there are processors.
+     * @param <T> the problem type
+     * @param <R> the solution type
+     * @param problems the problems
+     * @param solver solves a problem
+     * @return the results, in the same order as the problems
+     */
+    public static <T, R> List<Result<T, R>> solve(List<T> problems, Function<T, R> solver) {
+        return solve(problems, () -> null, (_, t) -> solver.apply(t));
+    }
+}
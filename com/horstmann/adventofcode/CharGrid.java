@@ -1,22 +1,61 @@
 package com.horstmann.adventofcode;
 
 import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A bounded grid of char values, indexed by Location.
  * CAUTION: In (x, y) coordinates, x is the column and y the row, i.e. use new Location(y, x) 
  * TODO: Maybe make this into a grid of code points in 2025 to avoid (char) casts?
+ * The elements are stored in a single array, surrounded by a border of BORDER characters, so that 
+ * the neighbors of every valid cell can be accessed without bounds checks. Each row is followed by
+ * a border cell, which is also the border cell before the next row. Cells can be addressed by their 
+ * int index, and a neighbor in direction d has index index + offset(d).
+ * A grid that is obtained with map is backed by the bytes of a memory-mapped file, whose layout is 
+ * the same, since every row is followed by a newline. Since indexes are int values, the file must be 
+ * smaller than 2 GB. The grid is copied into an array of chars when it is first modified, which is safe 
+ * even if several threads modify the grid at the same time. That array needs twice as much memory as the file.
  */
 public class CharGrid {
-    private char[][] grid;
+    /**
+     * The contents of the cells surrounding the grid.
+     */
+    public static final char BORDER = '\n';
+    
+    private int rows;
+    private int cols;
+    private int stride; // cols + 1
+    private int shift; // the position of index 0 (row 0, column 0) in cells
+    private char[] cells; // null if the grid was obtained with map
+    private MemorySegment mapped; // the bytes of the mapped file, whose index 0 is row 0, column 0
+    private volatile char[] copy; // the copy of a mapped grid after its first modification, laid out like cells
+    private int[] offsets; // the index offsets of the neighbors, in the order of Direction.values()
 
-    private CharGrid() {}
+    private CharGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        stride = cols + 1;
+        shift = stride + 1;
+        offsets = new int[Direction.values().length];
+        for (var d : Direction.values()) offsets[d.ordinal()] = d.drc()[0] * stride + d.drc()[1];
+    }
     
     /**
      * Constructs a grid with given dimensions and initial char value.
@@ -25,12 +64,85 @@ public class CharGrid {
      * @param c the initial value for all elements
      */
     public CharGrid(int rows, int cols, char c) {
-        grid = new char[rows][cols];
+        this(rows, cols);
+        var a = allocate();
         for (int i = 0; i < rows; i++)
-            for (int j = 0; j < cols; j++)
-                grid[i][j] = c;
+            Arrays.fill(a, shift + i * stride, shift + i * stride + cols, c);
+        cells = a;
     }
     
+    private char[] allocate() {
+        var a = new char[shift + (rows + 1) * stride];
+        Arrays.fill(a, BORDER);
+        return a;
+    }
+
+    /**
+     * Copies the mapped bytes into an array before the first modification. The array is only 
+     * published when it is complete, and the lock ensures that concurrent first writes share one copy.
+     * It is kept in a separate volatile field so that reading the cells of other grids doesn't pay
+     * for the synchronization.
+     * @return the copy
+     */
+    private synchronized char[] copyMapped() {
+        if (copy != null) return copy;
+        long length = shift + (long) (rows + 1) * stride;
+        if (length > Integer.MAX_VALUE - 8) 
+            throw new UnsupportedOperationException("A mapped grid with %d rows and %d columns is too large to modify".formatted(rows, cols));
+        var runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        if (2 * length > available) 
+            throw new UnsupportedOperationException("Modifying a mapped grid with %d rows and %d columns needs %d bytes of memory, but only %d are available"
+                .formatted(rows, cols, 2 * length, available));
+        var a = allocate();
+        for (int i = 0; i < rows; i++) {
+            int start = i * stride;
+            for (int j = start; j < start + cols; j++) 
+                a[shift + j] = (char) (mapped.get(ValueLayout.JAVA_BYTE, j) & 0xFF);
+        }
+        copy = a;
+        return a;
+    }
+
+    /**
+     * Loads a CharGrid in the standard AoC format by mapping the file into memory, without copying it.
+     * The grid is backed by the mapped bytes until it is modified. Each byte is one element, so the file 
+     * should be ASCII. If the file has lines of different lengths or Windows line endings, it is parsed 
+     * as with parse.
+     * @param p the path to the file, which must be smaller than 2 GB since indexes are int values
+     * @return the grid
+     * @throws IOException when the file cannot be read or is too large
+     */
+    public static CharGrid map(Path p) throws IOException {
+        MemorySegment segment;
+        try (var channel = FileChannel.open(p, StandardOpenOption.READ)) {
+            if (channel.size() >= Integer.MAX_VALUE) throw new IOException(p + " is too large. Mapped grids must be smaller than 2 GB since indexes are int values.");
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto());
+        }
+        long size = segment.byteSize();
+        // Locate the row ends, and check that they are evenly spaced
+        long cols = -1;
+        int rows = 0;
+        long rowStart = 0;
+        for (long i = 0; i < size; i++) {
+            byte b = segment.get(ValueLayout.JAVA_BYTE, i);
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' || cols >= 0 && i - rowStart != cols) return parse(p);
+                cols = i - rowStart;
+                rows++;
+                rowStart = i + 1;
+            }
+        }
+        if (rowStart < size) { // no newline at the end
+            if (cols >= 0 && size - rowStart != cols) return parse(p);
+            cols = size - rowStart;
+            rows++;
+        }
+        var result = new CharGrid(rows, (int) Math.max(cols, 0));
+        result.mapped = segment;
+        return result;
+    }
+
     /**
      * Parses a CharGrid in the standard AoC format.
      * @param p the path to the file
@@ -38,29 +150,35 @@ public class CharGrid {
      * @throws IOException when the file cannot be read
      */
     public static CharGrid parse(Path p) throws IOException {
-        var result = new CharGrid();
-        result.grid = Files.lines(p).map(String::toCharArray).toArray(char[][]::new);
-        return result;
+        return parse(Files.readAllLines(p));
     }
 
     /**
-     * Parses a CharGrid in the standard AoC format.
+     * Parses a CharGrid in the standard AoC format. Lines that are shorter than the longest one
+     * are padded with spaces.
      * @param lines the lines containing the grid
      * @return the grid
-     * @throws IOException when the file cannot be read
      */
     public static CharGrid parse(List<String> lines) {
-        var result = new CharGrid();
-        result.grid = lines.stream().map(String::toCharArray).toArray(char[][]::new);
+        int cols = lines.stream().mapToInt(String::length).max().orElse(0);
+        var result = new CharGrid(lines.size(), cols);
+        var a = result.allocate();
+        for (int i = 0; i < lines.size(); i++) {
+            var line = lines.get(i);
+            int start = result.shift + result.index(i, 0);
+            line.getChars(0, line.length(), a, start);
+            Arrays.fill(a, start + line.length(), start + cols, ' ');
+        }
+        result.cells = a;
         return result;
     }
 
     public int rows() {
-        return grid.length;
+        return rows;
     }
 
     public int cols() {
-        return grid[0].length;
+        return cols;
     }
     
     /**
@@ -69,14 +187,139 @@ public class CharGrid {
      * @return true if the location is valid
      */
     public boolean isValid(Location p) {
-        return p.row() >= 0 && p.row() < grid.length && p.col() >= 0 && p.col() < grid[0].length;
+        return p.row() >= 0 && p.row() < rows && p.col() >= 0 && p.col() < cols;
+    }
+
+    /**
+     * Checks if the given index is the index of a cell in this grid.
+     * @param index an index 
+     * @return true if index is the index of a valid location, false if it is out of range or a border cell
+     */
+    public boolean isValid(int index) {
+        return index >= 0 && index < rows * stride && index % stride != cols;
     }
 
+    /**
+     * Gets the index of a cell. 
+     * @param row a row between -1 and rows()
+     * @param col a column between -1 and cols()
+     * @return the index of the cell, or of a border cell if row or col is -1, rows(), or cols()
+     */
+    public int index(int row, int col) {
+        return row * stride + col;
+    }
+
+    /**
+     * Gets the index of a cell. 
+     * @param p a valid location
+     * @return the index of the cell at p
+     */
+    public int index(Location p) {
+        return index(p.row(), p.col());
+    }
+
+    /**
+     * Gets the location of a cell.
+     * @param index a valid index
+     * @return the location of the cell with the given index
+     */
+    public Location location(int index) {
+        return new Location(row(index), col(index));
+    }
+
+    /**
+     * Gets the row of a cell.
+     * @param index a valid index
+     * @return the row of the cell with the given index
+     */
+    public int row(int index) {
+        return index / stride;
+    }
+
+    /**
+     * Gets the column of a cell.
+     * @param index a valid index
+     * @return the column of the cell with the given index
+     */
+    public int col(int index) {
+        return index % stride;
+    }
+
+    /**
+     * Gets the difference between the index of a neighbor and the index of a cell.
+     * @param d a direction
+     * @return the offset to add to an index to get the index of the neighbor in direction d
+     */
+    public int offset(Direction d) {
+        return offsets[d.ordinal()];
+    }
+
+    /**
+     * Yields all valid locations in row-major order. The stream can be split into blocks 
+     * of rows for parallel processing.
+     * @return a stream of the locations
+     */
     public Stream<Location> locations() {
-        return Stream.iterate(
-            new Location(0, 0),
-            this::isValid, 
-            l -> l.col() < cols() - 1 ? new Location(l.row(), l.col() + 1) : new Location(l.row() + 1, 0));
+        return cells().mapToObj(this::location);
+    }
+
+    /**
+     * Yields the indexes of all cells in row-major order. The stream can be split into blocks 
+     * of rows for parallel processing.
+     * @return a stream of the cell indexes
+     */
+    public IntStream cells() {
+        return StreamSupport.intStream(new CellSpliterator(0, rows * cols), false);
+    }
+
+    /**
+     * Traverses the cells with ordinal numbers from ... to - 1, where the ordinal number of the cell in 
+     * row r and column c is r * cols + c. Splitting prefers row boundaries.
+     */
+    private class CellSpliterator implements Spliterator.OfInt {
+        private int from;
+        private final int to;
+
+        CellSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public boolean tryAdvance(IntConsumer action) {
+            if (from >= to) return false;
+            action.accept(from / cols * stride + from % cols);
+            from++;
+            return true;
+        }
+
+        public void forEachRemaining(IntConsumer action) {
+            while (from < to) {
+                int row = from / cols;
+                int start = row * stride;
+                int end = Math.min(to - row * cols, cols); // the end column in this row
+                for (int c = from % cols; c < end; c++) action.accept(start + c);
+                from = row * cols + end;
+            }
+        }
+
+        public Spliterator.OfInt trySplit() {
+            if (to - from < 2) return null;
+            int mid = (from + to) >>> 1;
+            int rowStart = mid / cols * cols;
+            if (rowStart > from) mid = rowStart;
+            else if (rowStart + cols < to) mid = rowStart + cols;
+            var prefix = new CellSpliterator(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        public long estimateSize() {
+            return to - from;
+        }
+
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | DISTINCT | NONNULL | IMMUTABLE;
+        }
     }
     
     /**
@@ -86,11 +329,52 @@ public class CharGrid {
      */
     public Character get(Location p) {
         if (isValid(p))
-            return grid[p.row()][p.col()];
+            return getChar(index(p));
         else 
             return null;
     }
     
+    /**
+     * Gets the element at a row and column, without boxing.
+     * @param row a row between -1 and rows()
+     * @param col a column between -1 and cols()
+     * @return the element, or BORDER if row or col is -1, rows(), or cols()
+     */
+    public char getChar(int row, int col) {
+        return getChar(index(row, col));
+    }
+
+    /**
+     * Gets the element at an index, without boxing.
+     * @param index a valid index, or the index of a border cell
+     * @return the element, or BORDER for a border cell
+     */
+    public char getChar(int index) {
+        if (cells != null) return cells[shift + index];
+        return getMapped(index);
+    }
+
+    private char getMapped(int index) {
+        char[] a = copy;
+        if (a != null) return a[shift + index];
+        return index >= 0 && index < mapped.byteSize() ? (char) (mapped.get(ValueLayout.JAVA_BYTE, index) & 0xFF) : BORDER;
+    }
+
+    /**
+     * Sets the element at an index. 
+     * @param index a valid index
+     * @param c the new element
+     */
+    public void putChar(int index, char c) {
+        if (cells != null) {
+            cells[shift + index] = c;
+        } else {
+            char[] a = copy;
+            if (a == null) a = copyMapped();
+            a[shift + index] = c;
+        }
+    }
+    
     /**
      * Sets the element at a location. 
      * @param p the (row, col) location
@@ -99,8 +383,9 @@ public class CharGrid {
      */
     public Character put(Location p, char c) {
         if (isValid(p)) {
-            char old = grid[p.row()][p.col()];
-            grid[p.row()][p.col()] = c;
+            int i = index(p);
+            char old = getChar(i);
+            putChar(i, c);
             return old;
         } else
             return null;
@@ -116,7 +401,7 @@ public class CharGrid {
     public String substring(Location p, Direction d, int length) {
         var result = new StringBuilder();
         for (int i = 0; i < length; i++) {
-            if (isValid(p)) result.append(grid[p.row()][p.col()]);
+            if (isValid(p)) result.append(getChar(index(p)));
             p = p.moved(d);
         }
         
@@ -200,6 +485,150 @@ public class CharGrid {
         return r;
     }
 
+    /**
+     * Visits the valid neighbors of a cell in all eight compass directions, without allocating objects.
+     * CAUTION: Cells must not contain BORDER.
+     * @param index a valid index
+     * @param action receives the index of each valid neighbor, in the order of Direction.values()
+     */
+    public void forEachNeighbor(int index, IntConsumer action) {
+        for (int offset : offsets) {
+            int n = index + offset;
+            if (getChar(n) != BORDER) action.accept(n);
+        }
+    }
+
+    /**
+     * Visits the valid neighbors of a location in all eight compass directions, without allocating objects.
+     * CAUTION: Cells must not contain BORDER.
+     * @param p a valid location
+     * @param action receives the index of each valid neighbor, in the order of Direction.values()
+     */
+    public void forEachNeighbor(Location p, IntConsumer action) {
+        forEachNeighbor(index(p), action);
+    }
+
+    /**
+     * Visits the valid neighbors of a cell in the N E S W compass directions, without allocating objects.
+     * CAUTION: Cells must not contain BORDER.
+     * @param index a valid index
+     * @param action receives the index of each valid neighbor
+     */
+    public void forEachMainNeighbor(int index, IntConsumer action) {
+        for (var d : Direction.MAIN_DIRECTIONS) {
+            int n = index + offsets[d.ordinal()];
+            if (getChar(n) != BORDER) action.accept(n);
+        }
+    }
+
+    /**
+     * Counts the neighbors of a cell in all eight compass directions that contain a given character.
+     * @param index a valid index
+     * @param c the character to count
+     * @return the number of neighbors containing c
+     */
+    public int countNeighbors(int index, char c) {
+        int count = 0;
+        for (int offset : offsets)
+            if (getChar(index + offset) == c) count++;
+        return count;
+    }
+
+    /**
+     * Counts the neighbors of a location in all eight compass directions that contain a given character.
+     * @param p a valid location
+     * @param c the character to count
+     * @return the number of neighbors containing c
+     */
+    public int countNeighbors(Location p, char c) {
+        return countNeighbors(index(p), c);
+    }
+
+    /**
+     * Gets the directions of the neighbors of a cell that contain a given character, as a bit mask.
+     * @param index a valid index
+     * @param c the character to find
+     * @return a mask in which bit d.ordinal() is set if the neighbor in direction d contains c 
+     */
+    public int neighborMask(int index, char c) {
+        int mask = 0;
+        for (int d = 0; d < offsets.length; d++)
+            if (getChar(index + offsets[d]) == c) mask |= 1 << d;
+        return mask;
+    }
+
+    /**
+     * Gets the directions of the neighbors of a location that contain a given character, as a bit mask.
+     * @param p a valid location
+     * @param c the character to find
+     * @return a mask in which bit d.ordinal() is set if the neighbor in direction d contains c 
+     */
+    public int neighborMask(Location p, char c) {
+        return neighborMask(index(p), c);
+    }
+
+    /**
+     * Gets the directions to valid neighbors of a cell, as a bit mask.
+     * CAUTION: Cells must not contain BORDER.
+     * @param index a valid index
+     * @return a mask in which bit d.ordinal() is set if there is a valid neighbor in direction d 
+     */
+    public int validNeighborMask(int index) {
+        return ~neighborMask(index, BORDER) & (1 << offsets.length) - 1;
+    }
+
+    /**
+     * Applies a local rule to all cells in synchronous rounds until no cell changes. In each round, 
+     * the rule computes the new contents of each cell from the grid as it was at the start of the round.
+     * Since the rule may only look at a cell and its eight neighbors, a cell is only reconsidered 
+     * in the next round if it or one of its neighbors changed. The work per round is therefore 
+     * proportional to the number of changes, not to the size of the grid. 
+     * CAUTION: Cells must not contain BORDER.
+     * @param rule yields the new contents of the cell with a given index
+     * @return the number of cells that changed in each round
+     */
+    public int[] simulate(IntUnaryOperator rule) {
+        int[] worklist = cells().toArray();
+        int size = worklist.length;
+        int[] marks = new int[rows * stride]; // the last round in which a cell was added to the worklist
+        int[] changed = new int[size];
+        char[] values = new char[size];
+        int[] counts = new int[16];
+        int round = 0;
+        while (size > 0) {
+            int n = 0;
+            for (int k = 0; k < size; k++) {
+                int i = worklist[k];
+                char c = (char) rule.applyAsInt(i);
+                if (c != getChar(i)) {
+                    changed[n] = i;
+                    values[n] = c;
+                    n++;
+                }
+            }
+            if (n == 0) break;
+            for (int k = 0; k < n; k++) putChar(changed[k], values[k]);
+            if (round == counts.length) counts = Arrays.copyOf(counts, 2 * round);
+            counts[round++] = n;
+            size = 0;
+            for (int k = 0; k < n; k++) {
+                int i = changed[k];
+                if (marks[i] != round) {
+                    marks[i] = round;
+                    worklist[size++] = i;
+                }
+                for (int offset : offsets) {
+                    int j = i + offset;
+                    if (getChar(j) != BORDER && marks[j] != round) {
+                        marks[j] = round;
+                        worklist[size++] = j;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(counts, round);
+    }
+
     /**
      * Gets valid locations within a given distance from a given location.
      * @param p a location (need not be valid)
@@ -217,13 +646,35 @@ public class CharGrid {
         return r;
     }                
     
+    /**
+     * Labels the regions of cells with the same contents that are connected through N E S W neighbors.
+     * This is much faster than calling Graphs.connectedComponents with sameNeighbors.
+     * @return the labels of all cells, together with the size, perimeter, and bounding box of each region
+     */
+    public GridLabels labelRegions() {
+        return new GridLabels(this, false, false);
+    }
+
+    /**
+     * Labels the regions of cells with the same contents.
+     * @param diagonal true if cells are also connected through diagonal neighbors
+     * @param parallel true if bands of rows should be labeled in parallel
+     * @return the labels of all cells, together with the size, perimeter, and bounding box of each region
+     */
+    public GridLabels labelRegions(boolean diagonal, boolean parallel) {
+        return new GridLabels(this, diagonal, parallel);
+    }
+
     /**
      * Gets the location of the first occurrence of a given character, in row-major order.
      * @param c the character to find
      * @return the location of the first occurrence of c, or null if c does not occur
      */
     public Location findFirst(char c) {
-        return locations().filter(p -> grid[p.row()][p.col()] == c).findFirst().orElse(null);
+        for (int i = 0; i < rows; i++)
+            for (int j = index(i, 0); j < index(i, cols); j++)
+                if (getChar(j) == c) return location(j);
+        return null;
     }
 
     /**
@@ -232,18 +683,39 @@ public class CharGrid {
      * @return the locations at which c occurs
      */
     public Stream<Location> findAll(char c) {
-        return locations().filter(p -> grid[p.row()][p.col()] == c);        
+        return cells().filter(i -> getChar(i) == c).mapToObj(this::location);
+    }
+
+    /**
+     * Gets the indexes of all occurrences of a given character, in row-major order.
+     * @param c the character to find
+     * @return the indexes of the cells in which c occurs
+     */
+    public int[] findAllIndices(char c) {
+        int[] result = new int[16];
+        int n = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = index(i, 0); j < index(i, cols); j++) {
+                if (getChar(j) == c) {
+                    if (n == result.length) result = Arrays.copyOf(result, 2 * n);
+                    result[n++] = j;
+                }
+            }
+        }
+        return Arrays.copyOf(result, n);
     }
 
     /**
      * Yields the standard AoC string representation. 
      */
     public String toString() {
-        var result = new StringBuilder();
-        for (int i = 0; i < rows(); i++) {
-            result.append(grid[i]);
-            result.append('\n');
-        }
-        return result.toString();
+        // Each row is followed by a border cell, which is a newline 
+        char[] a = cells != null ? cells : copy;
+        if (a != null) return new String(a, shift, rows * stride);
+        // The mapped bytes have the same layout, but the newline after the last row may be missing
+        var bytes = new byte[rows * stride];
+        MemorySegment.copy(mapped, ValueLayout.JAVA_BYTE, 0, bytes, 0, (int) Math.min(bytes.length, mapped.byteSize()));
+        if (rows > 0) bytes[bytes.length - 1] = BORDER;
+        return new String(bytes, StandardCharsets.ISO_8859_1);
     }
 }
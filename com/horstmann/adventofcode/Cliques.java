@@ -0,0 +1,226 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * Clique enumeration with the Bron–Kerbosch algorithm, using Tomita pivoting and, at the top level,
+ * a degeneracy ordering (Eppstein, Löffler, Strash, Listing All Maximal Cliques in Sparse Graphs in
+ * Near-optimal Time, 2010). Vertex sets are bit sets over vertex ids.
+ * @param <V> The type of the graph's vertices
+ */
+class Cliques<V> {
+    private final List<V> vertices = new ArrayList<>();
+    private final int words;
+    private final long[][] adjacent; // adjacent[v] is the bit set of neighbors of v
+    private final int[] order; // the degeneracy order
+
+    /**
+     * The clique and the candidate and excluded sets of a top-level branch.
+     */
+    private record Branch(int[] clique, long[] candidates, long[] excluded) {}
+
+    /**
+     * Prepares the undirected graph with the given vertices. An edge joins u and v if
+     * u is a neighbor of v or v is a neighbor of u. Neighbors that are not in vertices are ignored.
+     * @param vertices the vertices
+     * @param neighbors yields the neighbors of a vertex
+     */
+    Cliques(Collection<V> vertices, Function<V, Set<V>> neighbors) {
+        var ids = new HashMap<V, Integer>();
+        for (var v : vertices)
+            if (ids.putIfAbsent(v, this.vertices.size()) == null) this.vertices.add(v);
+        int n = this.vertices.size();
+        words = (n + 63) / 64;
+        adjacent = new long[n][words];
+        for (int u = 0; u < n; u++) {
+            for (var w : neighbors.apply(this.vertices.get(u))) {
+                Integer v = ids.get(w);
+                if (v != null && v != u) {
+                    adjacent[u][v / 64] |= 1L << v;
+                    adjacent[v][u / 64] |= 1L << u;
+                }
+            }
+        }
+        order = degeneracyOrder();
+    }
+
+    /**
+     * Enumerates all maximal cliques.
+     * @param parallel true if the branches for the vertices in the degeneracy order should run in parallel
+     * @param action receives each maximal clique. If parallel is true, it must be thread safe.
+     */
+    void maximalCliques(boolean parallel, Consumer<Set<V>> action) {
+        topLevel(parallel).forEach(i -> {
+            var s = split(i);
+            expand(s.clique(), 1, s.candidates(), s.excluded(), action);
+        });
+    }
+
+    /**
+     * Finds a clique of maximum size.
+     * @param parallel true if the branches for the vertices in the degeneracy order should run in parallel
+     * @return a maximum clique
+     */
+    Set<V> maximumClique(boolean parallel) {
+        var best = new AtomicReference<int[]>(new int[0]);
+        topLevel(parallel).forEach(i -> {
+            var s = split(i);
+            expandMaximum(s.clique(), 1, s.candidates(), best);
+        });
+        return toSet(best.get(), best.get().length);
+    }
+
+    private IntStream topLevel(boolean parallel) {
+        var stream = IntStream.range(0, order.length);
+        return parallel ? stream.parallel() : stream;
+    }
+
+    /**
+     * Starts the top-level branch for order[i], splitting the neighbors of order[i] into the 
+     * later ones (candidates) and the earlier ones (excluded).
+     */
+    private Branch split(int i) {
+        var s = new Branch(new int[vertices.size()], new long[words], new long[words]);
+        long[] candidates = s.candidates();
+        long[] excluded = s.excluded();
+        s.clique()[0] = order[i];
+        for (int j = 0; j < order.length; j++) {
+            int w = order[j];
+            if ((adjacent[order[i]][w / 64] & 1L << w) != 0) {
+                if (j > i) candidates[w / 64] |= 1L << w;
+                else excluded[w / 64] |= 1L << w;
+            }
+        }
+        return s;
+    }
+
+    private void expand(int[] clique, int size, long[] candidates, long[] excluded, Consumer<Set<V>> action) {
+        if (isEmpty(candidates)) {
+            if (isEmpty(excluded)) action.accept(toSet(clique, size));
+            return;
+        }
+        long[] pivotNeighbors = adjacent[pivot(candidates, excluded)];
+        for (int k = 0; k < words; k++) {
+            long bits = candidates[k] & ~pivotNeighbors[k];
+            while (bits != 0) {
+                int v = 64 * k + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                clique[size] = v;
+                expand(clique, size + 1, intersection(candidates, adjacent[v]), intersection(excluded, adjacent[v]), action);
+                candidates[k] &= ~(1L << v);
+                excluded[k] |= 1L << v;
+            }
+        }
+    }
+
+    private void expandMaximum(int[] clique, int size, long[] candidates, AtomicReference<int[]> best) {
+        int count = count(candidates);
+        if (size + count <= best.get().length) return;
+        if (count == 0) {
+            int[] found = Arrays.copyOf(clique, size);
+            best.accumulateAndGet(found, (a, b) -> a.length >= b.length ? a : b);
+            return;
+        }
+        for (int k = 0; k < words; k++) {
+            while (candidates[k] != 0) {
+                int v = 64 * k + Long.numberOfTrailingZeros(candidates[k]);
+                candidates[k] &= candidates[k] - 1;
+                clique[size] = v;
+                expandMaximum(clique, size + 1, intersection(candidates, adjacent[v]), best);
+                if (size + count(candidates) <= best.get().length) return;
+            }
+        }
+    }
+
+    /**
+     * Chooses the vertex in candidates ∪ excluded with the most neighbors in candidates (Tomita et al., 2006).
+     */
+    private int pivot(long[] candidates, long[] excluded) {
+        int best = -1;
+        int bestCount = -1;
+        for (int k = 0; k < words; k++) {
+            long bits = candidates[k] | excluded[k];
+            while (bits != 0) {
+                int u = 64 * k + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int c = 0;
+                for (int j = 0; j < words; j++) c += Long.bitCount(candidates[j] & adjacent[u][j]);
+                if (c > bestCount) {
+                    best = u;
+                    bestCount = c;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Orders the vertices by repeatedly removing one of minimum degree. The vertices are kept 
+     * sorted by degree, in buckets that shift when a degree drops (Batagelj, Zaversnik, 
+     * An O(m) Algorithm for Cores Decomposition of Networks, 2003).
+     */
+    private int[] degeneracyOrder() {
+        int n = vertices.size();
+        int[] degrees = new int[n];
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            degrees[v] = count(adjacent[v]);
+            maxDegree = Math.max(maxDegree, degrees[v]);
+        }
+        int[] start = new int[maxDegree + 2]; // start[d] is the position of the first vertex of degree d
+        for (int v = 0; v < n; v++) start[degrees[v] + 1]++;
+        for (int d = 1; d < start.length; d++) start[d] += start[d - 1];
+        int[] result = new int[n]; // sorted by degree, and removed up to position i
+        int[] positions = new int[n];
+        int[] next = Arrays.copyOf(start, start.length);
+        for (int v = 0; v < n; v++) {
+            positions[v] = next[degrees[v]]++;
+            result[positions[v]] = v;
+        }
+        for (int i = 0; i < n; i++) {
+            int v = result[i];
+            for (int k = 0; k < words; k++) {
+                long bits = adjacent[v][k];
+                while (bits != 0) {
+                    int u = 64 * k + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (degrees[u] > degrees[v]) { 
+                        // Swap u with the first vertex of its degree, then move the bucket boundary past it
+                        int d = degrees[u];
+                        int w = result[start[d]];
+                        result[positions[u]] = w;
+                        positions[w] = positions[u];
+                        result[start[d]] = u;
+                        positions[u] = start[d];
+                        start[d]++;
+                        degrees[u]--;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private Set<V> toSet(int[] clique, int size) {
+        var result = new HashSet<V>();
+        for (int i = 0; i < size; i++) result.add(vertices.get(clique[i]));
+        return result;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long b : bits) if (b != 0) return false;
+        return true;
+    }
+
+    private static int count(long[] bits) {
+        int result = 0;
+        for (long b : bits) result += Long.bitCount(b);
+        return result;
+    }
+
+    private static long[] intersection(long[] a, long[] b) {
+        long[] result = new long[a.length];
+        for (int k = 0; k < a.length; k++) result[k] = a[k] & b[k];
+        return result;
+    }
+}
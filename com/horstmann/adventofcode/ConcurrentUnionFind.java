@@ -0,0 +1,64 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * Lock-free disjoint sets of ints, for uniting from multiple threads. A root is only ever linked 
+ * below a smaller root with a compare-and-set, so the representative of each set is its smallest element. 
+ * Paths are halved with compare-and-set as well.
+ */
+public class ConcurrentUnionFind implements DisjointSets {
+    private final AtomicIntegerArray parents;
+
+    /**
+     * Constructs singleton sets {0}, {1}, ..., {n - 1}.
+     * @param n the number of elements
+     */
+    public ConcurrentUnionFind(int n) {
+        parents = new AtomicIntegerArray(n);
+        for (int e = 0; e < n; e++) parents.set(e, e);
+    }
+
+    public int size() {
+        return parents.length();
+    }
+
+    public int find(int e) {
+        while (true) {
+            int p = parents.get(e);
+            if (p == e) return e;
+            int g = parents.get(p);
+            if (g == p) return p;
+            parents.compareAndSet(e, p, g); // If this fails, another thread has already shortened the path
+            e = g;
+        }
+    }
+
+    public boolean unite(int e, int f) {
+        while (true) {
+            int r = find(e);
+            int s = find(f);
+            if (r == s) return false;
+            if (r > s) {
+                int t = r;
+                r = s;
+                s = t;
+            }
+            if (parents.compareAndSet(s, s, r)) return true;
+            // s is no longer a root; try again
+        }
+    }
+
+    public boolean connected(int e, int f) {
+        while (true) {
+            int r = find(e);
+            int s = find(f);
+            if (r == s) return true;
+            if (parents.get(r) == r) return false; // r was still a root after s was found
+        }
+    }
+
+    public boolean isConcurrent() {
+        return true;
+    }
+}
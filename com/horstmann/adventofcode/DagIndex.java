@@ -0,0 +1,146 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * A directed acyclic graph, compiled once together with its topological order, for answering
+ * many path count queries.
+ * @param <V> The type of the graph's vertices
+ */
+public class DagIndex<V> {
+    private final IntGraph<V> graph;
+    private final int[] order; // the vertex ids in topological order
+    private final int[] positions; // the position of each vertex id in order
+
+    /**
+     * Indexes the DAG that is reachable from a root.
+     * @param root the starting vertex
+     * @param neighbors yields the set of neighbors for any vertex
+     * @throws IllegalArgumentException if the graph has a cycle
+     */
+    public DagIndex(V root, Function<V, Set<V>> neighbors) {
+        this(List.of(root), neighbors);
+    }
+
+    /**
+     * Indexes the DAG that is reachable from some roots.
+     * @param roots the starting vertices
+     * @param neighbors yields the set of neighbors for any vertex
+     * @throws IllegalArgumentException if the graph has a cycle
+     */
+    public DagIndex(Collection<V> roots, Function<V, Set<V>> neighbors) {
+        graph = Graphs.compile(roots, neighbors);
+        order = Graphs.topologicalSort(graph);
+        positions = new int[order.length];
+        for (int i = 0; i < order.length; i++) positions[order[i]] = i;
+    }
+
+    /**
+     * The compiled graph.
+     * @return the graph
+     */
+    public IntGraph<V> graph() {
+        return graph;
+    }
+
+    /**
+     * The topological order.
+     * @return a list of the vertices so that for every directed edge u → v, u comes before v
+     */
+    public List<V> topologicalOrder() {
+        return graph.vertices(order);
+    }
+
+    /**
+     * Counts all paths between two vertices.
+     * @param from the starting vertex
+     * @param to the ending vertex
+     * @return the number of paths from start to end
+     * @throws ArithmeticException if the count overflows a long
+     */
+    public long pathCount(V from, V to) {
+        return pathCount(from, to, Math::addExact);
+    }
+
+    /**
+     * Counts all paths between two vertices, modulo a given number.
+     * @param from the starting vertex
+     * @param to the ending vertex
+     * @param modulus a number between 1 and 2^62
+     * @return the number of paths from start to end, modulo modulus
+     */
+    public long pathCount(V from, V to, long modulus) {
+        return pathCount(from, to, (a, b) -> (a + b) % modulus) % modulus;
+    }
+
+    /**
+     * Counts all paths between two vertices, without overflow.
+     * @param from the starting vertex
+     * @param to the ending vertex
+     * @return the number of paths from start to end
+     */
+    public BigInteger bigPathCount(V from, V to) {
+        int f = graph.id(from);
+        int t = graph.id(to);
+        if (f < 0 || t < 0 || positions[f] > positions[t]) return BigInteger.ZERO;
+        int start = positions[f];
+        var counts = new BigInteger[positions[t] - start + 1];
+        Arrays.fill(counts, BigInteger.ZERO);
+        counts[0] = BigInteger.ONE;
+        forEachSpanEdge(start, positions[t], (i, j) -> counts[j] = counts[j].add(counts[i]));
+        return counts[counts.length - 1];
+    }
+
+    /**
+     * Counts the paths from a vertex to all vertices.
+     * @param from the starting vertex
+     * @return a map that yields, for each vertex that is reachable from start, the number of paths to it
+     * @throws ArithmeticException if a count overflows a long
+     */
+    public Map<V, Long> pathCounts(V from) {
+        var result = new HashMap<V, Long>();
+        int f = graph.id(from);
+        if (f < 0) return result;
+        int start = positions[f];
+        long[] counts = new long[order.length - start];
+        counts[0] = 1;
+        forEachSpanEdge(start, order.length - 1, (i, j) -> counts[j] = Math.addExact(counts[j], counts[i]));
+        for (int i = 0; i < counts.length; i++)
+            if (counts[i] != 0) result.put(graph.vertex(order[start + i]), counts[i]);
+        return result;
+    }
+
+    private long pathCount(V from, V to, LongBinaryOperator add) {
+        int f = graph.id(from);
+        int t = graph.id(to);
+        if (f < 0 || t < 0 || positions[f] > positions[t]) return 0;
+        int start = positions[f];
+        long[] counts = new long[positions[t] - start + 1];
+        counts[0] = 1;
+        forEachSpanEdge(start, positions[t], (i, j) -> counts[j] = add.applyAsLong(counts[j], counts[i]));
+        return counts[counts.length - 1];
+    }
+
+    /**
+     * Visits the edges between vertices whose topological positions are in a given range,
+     * in topological order of their sources.
+     * @param start the first position
+     * @param end the last position
+     * @param action receives the positions of source and target, minus start
+     */
+    private void forEachSpanEdge(int start, int end, SpanEdgeAction action) {
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        for (int i = start; i < end; i++) {
+            int v = order[i];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int j = positions[targets[e]];
+                if (j <= end) action.accept(i - start, j - start);
+            }
+        }
+    }
+
+    private interface SpanEdgeAction {
+        void accept(int from, int to);
+    }
+}
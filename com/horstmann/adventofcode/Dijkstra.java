@@ -0,0 +1,238 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * Dijkstra's shortest path algorithm with long costs, backed by an indexed heap with decrease-key.
+ * Vertices are interned as ints when they are discovered, so that the per-vertex state lives in arrays.
+ * An instance can be reused for multiple searches. Each search discards the results of the preceding one.
+ * @param <V> The type of the graph's vertices
+ */
+public class Dijkstra<V> {
+    private final Map<V, Integer> ids = new HashMap<>();
+    private final List<V> vertices = new ArrayList<>();
+    private final IndexedHeap heap = new IndexedHeap(16);
+    private long[] dist = new long[16];
+    private int[] preds = new int[16];
+    private boolean[] settled = new boolean[16];
+    private int settledCount;
+    // When tracking all predecessors, the predecessors of v are predVertices[p] for p = firstPreds[v],
+    // nextPreds[p], nextPreds[nextPreds[p]], ... until -1
+    private boolean allPredecessors;
+    private int[] firstPreds = new int[16];
+    private int[] nextPreds = new int[16];
+    private int[] predVertices = new int[16];
+    private int predCount;
+
+    /**
+     * Sets whether all predecessors on shortest paths should be tracked, or just one of them.
+     * @param allPredecessors true if all predecessors should be tracked
+     * @return this object
+     */
+    public Dijkstra<V> allPredecessors(boolean allPredecessors) {
+        this.allPredecessors = allPredecessors;
+        return this;
+    }
+
+    /**
+     * Computes the minimum costs from a given vertex to all reachable vertices.
+     * @param root the starting vertex
+     * @param neighbors yields the neighbors of a vertex
+     * @param neighborDistances yields the (nonnegative) cost of an edge joining two neighboring vertices
+     * @return this object
+     */
+    public Dijkstra<V> search(V root, Function<V, Set<V>> neighbors, ToLongBiFunction<V, V> neighborDistances) {
+        search(root, neighbors, neighborDistances, _ -> false);
+        return this;
+    }
+
+    /**
+     * Computes the minimum costs from a given vertex, stopping when a goal vertex is settled.
+     * @param root the starting vertex
+     * @param neighbors yields the neighbors of a vertex
+     * @param neighborDistances yields the (nonnegative) cost of an edge joining two neighboring vertices
+     * @param goal tests whether a vertex is a goal
+     * @return the first goal vertex that was settled, or null if no goal is reachable
+     */
+    public V search(V root, Function<V, Set<V>> neighbors, ToLongBiFunction<V, V> neighborDistances, Predicate<V> goal) {
+        return search(root, neighbors, neighborDistances, goal, _ -> 0);
+    }
+
+    /**
+     * A* search from a given vertex, stopping when a goal vertex is settled.
+     * @param root the starting vertex
+     * @param neighbors yields the neighbors of a vertex
+     * @param neighborDistances yields the (nonnegative) cost of an edge joining two neighboring vertices
+     * @param goal tests whether a vertex is a goal
+     * @param heuristic estimates the cost from a vertex to the nearest goal. It must be consistent: 
+     * It may never exceed the cost of an edge plus the estimate at its end, and it must be 0 at each goal.
+     * Then it never overestimates, and each settled vertex has its final cost.
+     * @return the first goal vertex that was settled, or null if no goal is reachable
+     */
+    public V search(V root, Function<V, Set<V>> neighbors, ToLongBiFunction<V, V> neighborDistances, Predicate<V> goal,
+            ToLongFunction<V> heuristic) {
+        clear();
+        int r = intern(root);
+        dist[r] = 0;
+        heap.push(r, heuristic.applyAsLong(root));
+        while (!heap.isEmpty()) {
+            int s = heap.pop();
+            settled[s] = true;
+            settledCount++;
+            V sv = vertices.get(s);
+            if (goal.test(sv)) return sv;
+            long sd = dist[s];
+            for (var n : neighbors.apply(sv)) {
+                int i = intern(n);
+                if (settled[i]) continue;
+                long nd = sd + neighborDistances.applyAsLong(sv, n);
+                if (nd < dist[i]) {
+                    dist[i] = nd;
+                    preds[i] = s;
+                    heap.push(i, nd + heuristic.applyAsLong(n));
+                    if (allPredecessors) {
+                        firstPreds[i] = -1;
+                        addPredecessor(i, s);
+                    }
+                } else if (nd == dist[i] && allPredecessors) {
+                    addPredecessor(i, s);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The cost of the shortest path found from the root.
+     * @param v a vertex
+     * @return the minimum cost of reaching v, or Long.MAX_VALUE if v has not been reached
+     */
+    public long cost(V v) {
+        Integer i = ids.get(v);
+        return i == null ? Long.MAX_VALUE : dist[i];
+    }
+
+    /**
+     * Checks whether the cost of a vertex is final.
+     * @param v a vertex
+     * @return true if v was settled by the search
+     */
+    public boolean isSettled(V v) {
+        Integer i = ids.get(v);
+        return i != null && settled[i];
+    }
+
+    /**
+     * The number of vertices that the last search settled.
+     * @return the number of settled vertices
+     */
+    public int settledCount() {
+        return settledCount;
+    }
+
+    /**
+     * The predecessor of a vertex on a shortest path.
+     * @param v a vertex
+     * @return the predecessor of v, or null if v is the root or has not been reached
+     */
+    public V predecessor(V v) {
+        Integer i = ids.get(v);
+        return i == null || preds[i] < 0 ? null : vertices.get(preds[i]);
+    }
+
+    /**
+     * All predecessors of a vertex on shortest paths. Only available when tracking all predecessors.
+     * @param v a vertex
+     * @return the predecessors of v, or the empty set if v is the root or has not been reached
+     */
+    public Set<V> predecessors(V v) {
+        if (!allPredecessors) throw new IllegalStateException("Not tracking all predecessors");
+        Integer i = ids.get(v);
+        var result = new HashSet<V>();
+        if (i != null)
+            for (int p = firstPreds[i]; p >= 0; p = nextPreds[p])
+                result.add(vertices.get(predVertices[p]));
+        return result;
+    }
+
+    /**
+     * A shortest path to a vertex.
+     * @param v a vertex
+     * @return a path that starts with the root and ends at v, or the empty list if v has not been reached
+     */
+    public List<V> path(V v) {
+        Integer i = ids.get(v);
+        var p = new ArrayList<V>();
+        if (i == null) return p;
+        for (int j = i; j >= 0; j = preds[j]) p.add(vertices.get(j));
+        return p.reversed();
+    }
+
+    /**
+     * The costs of all reached vertices.
+     * @return a map with the cost of the shortest path from the root to each reached vertex
+     */
+    public Map<V, Long> costs() {
+        var result = new HashMap<V, Long>();
+        for (int i = 0; i < vertices.size(); i++) result.put(vertices.get(i), dist[i]);
+        return result;
+    }
+
+    /**
+     * The predecessors of all reached vertices.
+     * @return a map with the predecessor of each reached vertex on a shortest path. The root is mapped to null.
+     */
+    public Map<V, V> predecessorMap() {
+        var result = new HashMap<V, V>();
+        for (int i = 0; i < vertices.size(); i++)
+            result.put(vertices.get(i), preds[i] < 0 ? null : vertices.get(preds[i]));
+        return result;
+    }
+
+    /**
+     * All predecessors of all reached vertices. Only available when tracking all predecessors.
+     * @return a map with the predecessors of each reached vertex on shortest paths. The root is mapped to the empty set.
+     */
+    public Map<V, Set<V>> allPredecessorMap() {
+        var result = new HashMap<V, Set<V>>();
+        for (var v : vertices) result.put(v, predecessors(v));
+        return result;
+    }
+
+    private void clear() {
+        ids.clear();
+        vertices.clear();
+        heap.clear();
+        settledCount = 0;
+        predCount = 0;
+    }
+
+    private int intern(V v) {
+        Integer i = ids.putIfAbsent(v, vertices.size());
+        if (i != null) return i;
+        int n = vertices.size();
+        vertices.add(v);
+        if (n == dist.length) {
+            dist = Arrays.copyOf(dist, 2 * n);
+            preds = Arrays.copyOf(preds, 2 * n);
+            settled = Arrays.copyOf(settled, 2 * n);
+            firstPreds = Arrays.copyOf(firstPreds, 2 * n);
+        }
+        dist[n] = Long.MAX_VALUE;
+        preds[n] = -1;
+        settled[n] = false;
+        firstPreds[n] = -1;
+        return n;
+    }
+
+    private void addPredecessor(int v, int p) {
+        if (predCount == predVertices.length) {
+            predVertices = Arrays.copyOf(predVertices, 2 * predCount);
+            nextPreds = Arrays.copyOf(nextPreds, 2 * predCount);
+        }
+        predVertices[predCount] = p;
+        nextPreds[predCount] = firstPreds[v];
+        firstPreds[v] = predCount;
+        predCount++;
+    }
+}
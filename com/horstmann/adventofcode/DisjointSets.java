@@ -0,0 +1,68 @@
+package com.horstmann.adventofcode;
+
+import java.util.Arrays;
+
+/**
+ * A partition of the ints 0 ... size() - 1 into disjoint sets, represented by one element of each set.
+ */
+public interface DisjointSets {
+    /**
+     * The number of elements.
+     * @return the number of elements
+     */
+    int size();
+
+    /**
+     * Finds the representative of the set containing an element.
+     * @param e an element
+     * @return the representative of the set containing e
+     */
+    int find(int e);
+
+    /**
+     * Unites the sets containing the given elements.
+     * @param e an element in one of the sets
+     * @param f another element in one of the sets
+     * @return true if e and f belonged to different sets which have been united,
+     * false if e and f already belonged to the same set
+     */
+    boolean unite(int e, int f);
+
+    /**
+     * Checks whether two elements belong to the same set.
+     * @param e an element
+     * @param f another element
+     * @return true if e and f belong to the same set
+     */
+    default boolean connected(int e, int f) {
+        return find(e) == find(f);
+    }
+
+    /**
+     * Checks whether multiple threads may call find and unite at the same time.
+     * @return true if this implementation is thread safe
+     */
+    default boolean isConcurrent() {
+        return false;
+    }
+
+    /**
+     * Numbers the sets.
+     * @return an array that maps each element to the number of its set. Sets are numbered 0, 1, 2, ... 
+     * in the order of their smallest element.
+     */
+    default int[] labels() {
+        int n = size();
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        int[] rootLabels = new int[n];
+        Arrays.fill(rootLabels, -1);
+        int count = 0;
+        for (int e = 0; e < n; e++) {
+            int r = find(e);
+            if (rootLabels[r] == -1) rootLabels[r] = count++;
+            labels[e] = rootLabels[r];
+        }
+        return labels;
+    }
+}
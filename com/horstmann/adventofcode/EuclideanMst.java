@@ -0,0 +1,248 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * Minimum spanning trees of points in 3-space, with Borůvka's algorithm. In each round, every point
+ * finds its nearest neighbor in another component with a k-d tree, skipping subtrees that lie entirely
+ * in its own component and subtrees that are farther away than the shortest edge leaving the component
+ * that has been found so far. Then each component is joined to the component at the end of its shortest edge.
+ * Ties between edges of equal length are broken by the indexes of their endpoints, which makes the
+ * result a well-defined minimum spanning tree: the one that Kruskal's algorithm yields when it considers 
+ * the edges by length, then by smaller endpoint, then by larger endpoint.
+ * Internally, points are identified by their position in the tree, so that each leaf is a contiguous range.
+ */
+class EuclideanMst {
+    private static final int LEAF_SIZE = 8;
+
+    private final int n;
+    private final int[] original; // the index of the point at each tree position
+    private final long[] xs, ys, zs; // the coordinates of the point at each tree position
+    // The tree nodes. Node 0 is the root. Leaves have left[node] == -1.
+    private final int[] lo, hi, left, right;
+    private final long[] minX, maxX, minY, maxY, minZ, maxZ; // the bounding box of each node
+    private int nodeCount;
+    private int[] nodeComponents; // the component of all points in a node, or -1 if they are in different components
+    private int[] components; // the component of each point
+    private AtomicLongArray bounds; // the shortest edge length found so far for each component
+    private boolean[] inexact; // true if the search for a point was cut short by the bound of its component
+
+    EuclideanMst(long[] x, long[] y, long[] z) {
+        n = x.length;
+        original = new int[n];
+        for (int i = 0; i < n; i++) original[i] = i;
+        xs = x.clone();
+        ys = y.clone();
+        zs = z.clone();
+        int capacity = Math.max(1, 4 * n / LEAF_SIZE + 1);
+        lo = new int[capacity];
+        hi = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        minX = new long[capacity];
+        maxX = new long[capacity];
+        minY = new long[capacity];
+        maxY = new long[capacity];
+        minZ = new long[capacity];
+        maxZ = new long[capacity];
+        if (n > 0) build(0, n);
+    }
+
+    /**
+     * Computes the minimum spanning tree.
+     * @return the edges of the tree, each given as the indexes of its two points, with the smaller one first
+     */
+    List<int[]> edges() {
+        var uf = new IntUnionFind(n);
+        var result = new ArrayList<int[]>();
+        components = new int[n];
+        nodeComponents = new int[nodeCount];
+        bounds = new AtomicLongArray(n);
+        int[] nearest = new int[n];
+        Arrays.fill(nearest, -1);
+        long[] nearestDist = new long[n];
+        int[] bestFrom = new int[n];
+        int[] bestTo = new int[n];
+        long[] bestDist = new long[n];
+        inexact = new boolean[n];
+        while (uf.setCount() > 1) {
+            for (int i = 0; i < n; i++) components[i] = uf.find(i);
+            labelNodes(0);
+            for (int c = 0; c < n; c++) bounds.set(c, Long.MAX_VALUE);
+            var stale = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                // Components only grow, so the nearest point in another component from the last round 
+                // is still the nearest one if it is still in another component 
+                if (nearest[i] >= 0 && !inexact[i] && components[nearest[i]] != components[i])
+                    bounds.accumulateAndGet(components[i], nearestDist[i], Math::min);
+                else {
+                    stale[i] = true;
+                    inexact[i] = false;
+                    nearest[i] = -1;
+                    nearestDist[i] = Long.MAX_VALUE;
+                }
+            }
+            IntStream.range(0, n).parallel().filter(i -> stale[i])
+                .forEach(i -> search(0, i, boxDistance(0, i), nearest, nearestDist));
+            Arrays.fill(bestTo, -1);
+            for (int i = 0; i < n; i++) {
+                int c = components[i];
+                if (nearest[i] >= 0 && (bestTo[c] < 0
+                        || less(nearestDist[i], i, nearest[i], bestDist[c], bestFrom[c], bestTo[c]))) {
+                    bestFrom[c] = i;
+                    bestTo[c] = nearest[i];
+                    bestDist[c] = nearestDist[i];
+                }
+            }
+            for (int c = 0; c < n; c++) {
+                if (bestTo[c] >= 0 && uf.unite(bestFrom[c], bestTo[c])) {
+                    int i = original[bestFrom[c]];
+                    int j = original[bestTo[c]];
+                    result.add(new int[] { Math.min(i, j), Math.max(i, j) });
+                }
+            }
+        }
+        return result;
+    }
+
+    private long distanceSquared(int i, int j) {
+        long dx = xs[i] - xs[j];
+        long dy = ys[i] - ys[j];
+        long dz = zs[i] - zs[j];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private int build(int from, int to) {
+        int node = nodeCount++;
+        lo[node] = from;
+        hi[node] = to;
+        minX[node] = minY[node] = minZ[node] = Long.MAX_VALUE;
+        maxX[node] = maxY[node] = maxZ[node] = Long.MIN_VALUE;
+        for (int k = from; k < to; k++) {
+            minX[node] = Math.min(minX[node], xs[k]);
+            maxX[node] = Math.max(maxX[node], xs[k]);
+            minY[node] = Math.min(minY[node], ys[k]);
+            maxY[node] = Math.max(maxY[node], ys[k]);
+            minZ[node] = Math.min(minZ[node], zs[k]);
+            maxZ[node] = Math.max(maxZ[node], zs[k]);
+        }
+        if (to - from <= LEAF_SIZE) {
+            left[node] = -1;
+        } else {
+            long dx = maxX[node] - minX[node];
+            long dy = maxY[node] - minY[node];
+            long dz = maxZ[node] - minZ[node];
+            long[] widest = dx >= dy && dx >= dz ? xs : dy >= dz ? ys : zs;
+            int mid = (from + to) >>> 1;
+            select(widest, from, to - 1, mid);
+            left[node] = build(from, mid);
+            right[node] = build(mid, to);
+        }
+        return node;
+    }
+
+    /**
+     * Rearranges the points at positions from ... to so that the point at position k is in sorted position
+     * with respect to the given coordinate.
+     */
+    private void select(long[] c, int from, int to, int k) {
+        while (from < to) {
+            long pivot = c[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (c[i] < pivot) i++;
+                while (c[j] > pivot) j--;
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) to = j;
+            else if (k >= i) from = i;
+            else return;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int t = original[i]; original[i] = original[j]; original[j] = t;
+        long u = xs[i]; xs[i] = xs[j]; xs[j] = u;
+        u = ys[i]; ys[i] = ys[j]; ys[j] = u;
+        u = zs[i]; zs[i] = zs[j]; zs[j] = u;
+    }
+
+    private int labelNodes(int node) {
+        int c;
+        if (left[node] < 0) {
+            c = components[lo[node]];
+            for (int k = lo[node] + 1; k < hi[node] && c >= 0; k++)
+                if (components[k] != c) c = -1;
+        } else {
+            c = labelNodes(left[node]);
+            int d = labelNodes(right[node]);
+            if (c != d) c = -1;
+        }
+        nodeComponents[node] = c;
+        return c;
+    }
+
+    private void search(int node, int i, long boxDist, int[] nearest, long[] nearestDist) {
+        int c = components[i];
+        if (nodeComponents[node] == c) return;
+        // Only the shortest edge leaving the component matters, so the search can stop at the shortest
+        // one that any point in the component has found so far
+        if (boxDist > nearestDist[i]) return;
+        if (boxDist > bounds.get(c)) {
+            inexact[i] = true;
+            return;
+        }
+        if (left[node] < 0) {
+            for (int j = lo[node]; j < hi[node]; j++) {
+                if (components[j] != c) {
+                    long d = distanceSquared(i, j);
+                    if (nearest[i] < 0 || less(d, i, j, nearestDist[i], i, nearest[i])) {
+                        nearest[i] = j;
+                        nearestDist[i] = d;
+                        bounds.accumulateAndGet(c, d, Math::min);
+                    }
+                }
+            }
+        } else {
+            int first = left[node];
+            int second = right[node];
+            long firstDist = boxDistance(first, i);
+            long secondDist = boxDistance(second, i);
+            if (secondDist < firstDist) { // Visit the closer child first
+                search(second, i, secondDist, nearest, nearestDist);
+                search(first, i, firstDist, nearest, nearestDist);
+            } else {
+                search(first, i, firstDist, nearest, nearestDist);
+                search(second, i, secondDist, nearest, nearestDist);
+            }
+        }
+    }
+
+    private long boxDistance(int node, int i) {
+        long dx = Math.max(0, Math.max(minX[node] - xs[i], xs[i] - maxX[node]));
+        long dy = Math.max(0, Math.max(minY[node] - ys[i], ys[i] - maxY[node]));
+        long dz = Math.max(0, Math.max(minZ[node] - zs[i], zs[i] - maxZ[node]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Compares edges, given by the tree positions of their endpoints, by length, then by the smaller 
+     * original index of their endpoints, then by the larger one.
+     */
+    private boolean less(long d, int i, int j, long e, int k, int l) {
+        if (d != e) return d < e;
+        i = original[i];
+        j = original[j];
+        k = original[k];
+        l = original[l];
+        int a = Math.min(i, j);
+        int b = Math.min(k, l);
+        if (a != b) return a < b;
+        return Math.max(i, j) < Math.max(k, l);
+    }
+}
@@ -0,0 +1,158 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * Linear algebra over GF(2), the field with elements 0 and 1 in which addition is XOR.
+ * A system of equations is given by the columns of its matrix, such as the lights toggled by each button,
+ * and a right-hand side, such as the lights that should be on. A solution is the set of columns whose 
+ * sum is the right-hand side.
+ * Internally, the rows of the matrix are packed into long arrays, so that adding rows takes one XOR
+ * for every 64 columns.
+ */
+public class GF2 {
+    private GF2() {}
+
+    /**
+     * Computes the rank of a set of vectors.
+     * @param vectors the vectors
+     * @return the dimension of the space spanned by the vectors
+     */
+    public static int rank(List<BitSet> vectors) {
+        return new Echelon(vectors, new BitSet()).rank;
+    }
+
+    /**
+     * Finds some solution of a system of equations.
+     * @param columns the columns of the matrix
+     * @param target the right-hand side
+     * @return the set of indexes of the columns that sum to target, or null if there is no solution
+     */
+    public static BitSet solve(List<BitSet> columns, BitSet target) {
+        var e = new Echelon(columns, target);
+        return e.consistent ? BitSet.valueOf(e.particularSolution()) : null;
+    }
+
+    /**
+     * Computes a basis of the null space of a matrix.
+     * @param columns the columns of the matrix
+     * @return linearly independent sets of column indexes that each sum to zero, such that every 
+     * set of columns summing to zero is a sum of them
+     */
+    public static List<BitSet> nullSpace(List<BitSet> columns) {
+        var result = new ArrayList<BitSet>();
+        for (long[] v : new Echelon(columns, new BitSet()).nullSpace()) result.add(BitSet.valueOf(v));
+        return result;
+    }
+
+    /**
+     * Finds a solution of a system of equations with the fewest columns. All solutions are the sum of 
+     * one solution and an element of the null space. The elements of the null space are enumerated in
+     * Gray code order, so that each one differs from the preceding one by a single basis vector. 
+     * The cost is proportional to 2^d, where d is the number of columns minus the rank.
+     * @param columns the columns of the matrix
+     * @param target the right-hand side
+     * @return the set of indexes of the fewest columns that sum to target, or null if there is no solution
+     * @throws IllegalArgumentException if the null space has dimension greater than 62
+     */
+    public static BitSet minimumWeightSolution(List<BitSet> columns, BitSet target) {
+        var e = new Echelon(columns, target);
+        if (!e.consistent) return null;
+        long[] current = e.particularSolution();
+        long[][] basis = e.nullSpace();
+        if (basis.length > 62) throw new IllegalArgumentException("Null space dimension " + basis.length);
+        long[] best = current.clone();
+        int bestWeight = weight(current);
+        for (long g = 1; g < 1L << basis.length; g++) {
+            long[] b = basis[Long.numberOfTrailingZeros(g)]; // The bit that changes from Gray code g - 1 to g
+            for (int k = 0; k < current.length; k++) current[k] ^= b[k];
+            int w = weight(current);
+            if (w < bestWeight) {
+                bestWeight = w;
+                System.arraycopy(current, 0, best, 0, current.length);
+            }
+        }
+        return BitSet.valueOf(best);
+    }
+
+    private static int weight(long[] v) {
+        int result = 0;
+        for (long w : v) result += Long.bitCount(w);
+        return result;
+    }
+
+    /**
+     * The reduced row echelon form of an augmented matrix.
+     */
+    private static class Echelon {
+        private final int n; // the number of unknowns
+        private final int words; // the number of longs in a solution vector
+        private final long[][] rows; // the augmented rows. Column n is the right-hand side.
+        private final int[] pivots; // the pivot column of each of the first rank rows
+        private int rank;
+        private boolean consistent = true;
+
+        Echelon(List<BitSet> columns, BitSet target) {
+            n = columns.size();
+            words = (n + 63) / 64;
+            int m = target.length();
+            for (var c : columns) m = Math.max(m, c.length());
+            rows = new long[m][(n + 64) / 64];
+            for (int j = 0; j < n; j++) {
+                var c = columns.get(j);
+                for (int i = c.nextSetBit(0); i >= 0; i = c.nextSetBit(i + 1)) rows[i][j / 64] |= 1L << j;
+            }
+            for (int i = target.nextSetBit(0); i >= 0; i = target.nextSetBit(i + 1)) rows[i][n / 64] |= 1L << n;
+            pivots = new int[Math.min(m, n)];
+            for (int j = 0; j < n && rank < m; j++) {
+                int r = rank;
+                while (r < m && !get(rows[r], j)) r++;
+                if (r == m) continue;
+                long[] pivot = rows[r];
+                rows[r] = rows[rank];
+                rows[rank] = pivot;
+                for (int i = 0; i < m; i++) {
+                    if (i != rank && get(rows[i], j)) {
+                        long[] row = rows[i];
+                        for (int k = j / 64; k < row.length; k++) row[k] ^= pivot[k];
+                    }
+                }
+                pivots[rank++] = j;
+            }
+            for (int i = rank; i < m; i++) if (get(rows[i], n)) consistent = false;
+        }
+
+        /**
+         * The solution in which all free unknowns are zero.
+         */
+        long[] particularSolution() {
+            long[] x = new long[words];
+            for (int r = 0; r < rank; r++) 
+                if (get(rows[r], n)) x[pivots[r] / 64] |= 1L << pivots[r];
+            return x;
+        }
+
+        /**
+         * One basis vector for each free unknown f, with x_f = 1 and all other free unknowns zero.
+         */
+        long[][] nullSpace() {
+            var isPivot = new boolean[n];
+            for (int r = 0; r < rank; r++) isPivot[pivots[r]] = true;
+            long[][] result = new long[n - rank][];
+            int b = 0;
+            for (int f = 0; f < n; f++) {
+                if (isPivot[f]) continue;
+                long[] v = new long[words];
+                v[f / 64] |= 1L << f;
+                for (int r = 0; r < rank; r++) 
+                    if (get(rows[r], f)) v[pivots[r] / 64] |= 1L << pivots[r];
+                result[b++] = v;
+            }
+            return result;
+        }
+
+        private static boolean get(long[] row, int j) {
+            return (row[j / 64] & 1L << j) != 0;
+        }
+    }
+}
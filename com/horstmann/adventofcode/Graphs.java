@@ -1,10 +1,6 @@
 package com.horstmann.adventofcode;
 
 import module java.base;
-import java.util.NoSuchElementException;
-
-// TODO Bidirectional BFS https://zdimension.fr/everyone-gets-bidirectional-bfs-wrong/
-// TODO Clique finding https://en.wikipedia.org/wiki/Bron%E2%80%93Kerbosch_algorithm
 
 public class Graphs {
     /**
@@ -82,6 +78,80 @@ public class Graphs {
         return p.reversed();
     }
 
+    /**
+     * Shortest path between two vertices, by breadth first search from both ends. Each step expands 
+     * a complete level of the smaller frontier, and the search ends after the first level in which the 
+     * frontiers meet. (See https://zdimension.fr/everyone-gets-bidirectional-bfs-wrong/ for why it must not 
+     * stop at the first meeting vertex.)
+     * @param <V> The type of the graph's vertices
+     * @param start the starting vertex
+     * @param goal the vertex to reach
+     * @param neighbors yields the set of neighbors for any vertex
+     * @param reverseNeighbors yields the set of vertices that have a given vertex as neighbor
+     * @return a shortest path that starts with start and ends with goal, or the empty list if goal is not reachable
+     */
+    public static <V> List<V> bidirectionalBfs(V start, V goal, Function<V, Set<V>> neighbors, Function<V, Set<V>> reverseNeighbors) {
+        if (start.equals(goal)) return List.of(start);
+        var forward = new BfsSide<V>(start, neighbors);
+        var backward = new BfsSide<V>(goal, reverseNeighbors);
+        V meeting = null;
+        while (meeting == null && !forward.frontier.isEmpty() && !backward.frontier.isEmpty()) {
+            if (forward.frontier.size() <= backward.frontier.size())
+                meeting = forward.expand(backward);
+            else 
+                meeting = backward.expand(forward);
+        }
+        if (meeting == null) return List.of();
+        var result = path(forward.parents, meeting);
+        for (V v = backward.parents.get(meeting); v != null; v = backward.parents.get(v))
+            result.add(v);
+        return result;
+    }
+    
+    private static class BfsSide<V> {
+        Function<V, Set<V>> neighbors;
+        Map<V, V> parents = new HashMap<>();
+        Map<V, Integer> dist = new HashMap<>();
+        List<V> frontier = new ArrayList<>();
+        int depth;
+        
+        BfsSide(V root, Function<V, Set<V>> neighbors) {
+            this.neighbors = neighbors;
+            parents.put(root, null);
+            dist.put(root, 0);
+            frontier.add(root);
+        }
+        
+        /**
+         * Expands the current level.
+         * @param other the search from the other end
+         * @return the vertex on the shortest path through this level that is known to both sides, 
+         * or null if the sides have not yet met
+         */
+        V expand(BfsSide<V> other) {
+            var next = new ArrayList<V>();
+            V best = null;
+            int bestLength = Integer.MAX_VALUE;
+            depth++;
+            for (V p : frontier) {
+                for (V n : neighbors.apply(p)) {
+                    if (!parents.containsKey(n)) {
+                        parents.put(n, p);
+                        dist.put(n, depth);
+                        next.add(n);
+                        Integer otherDist = other.dist.get(n);
+                        if (otherDist != null && depth + otherDist < bestLength) {
+                            best = n;
+                            bestLength = depth + otherDist;
+                        }
+                    }
+                }
+            }
+            frontier = next;
+            return best;
+        }
+    }
+
     /**
      * All paths from the root of a DAG
      * @param <V> The type of the graph's vertices
@@ -108,20 +178,11 @@ public class Graphs {
      * @param end the ending node
      * @param neighbors yields the set of neighbors for any vertex 
      * @return the number of paths from start to end      
+     * NOTE: Use a DagIndex for multiple queries on the same graph
      */
     public static <V> long dagPathCount(V start, V end, Function<V, Set<V>> neighbors) {
-        var topoSort = topologicalSort(start, neighbors);
-        int istart = topoSort.indexOf(start);
-        int iend = topoSort.indexOf(end);
-        var counts = new HashMap<V, Long>();
-        counts.put(end, 1L);
-        for (int i = iend - 1; i >= istart; i--) {
-            V v = topoSort.get(i); 
-            for (V n : neighbors.apply(v))
-                counts.put(v, counts.getOrDefault(v, 0L) + counts.getOrDefault(n, 0L));            
-        }
-        return counts.getOrDefault(start, 0L);
-   }
+        return new DagIndex<V>(start, neighbors).pathCount(start, end);
+    }
         
     /**
      * Depth first search
@@ -142,7 +203,7 @@ public class Graphs {
      * @param finished is applied to each vertex after all descendants have been visited
      * @return a map that maps each reachable vertex to its predecessor. The root has parent null.
      */
-    private static <V> SequencedMap<V, V> dfs(V root, Function<V, Set<V>> neighbors, Consumer<V> finished) {
+    public static <V> SequencedMap<V, V> dfs(V root, Function<V, Set<V>> neighbors, Consumer<V> finished) {
         var parents = new LinkedHashMap<V, V>();
         var discovered = new HashSet<V>();
         discovered.add(root);
@@ -159,7 +220,8 @@ public class Graphs {
     }
     
     /**
-     * Depth first search with filter and visitor
+     * Depth first search with filter and visitor. The search uses an explicit stack, not recursion, 
+     * so that it can traverse arbitrarily deep graphs.
      * @param <V> The type of the graph's vertices
      * @param root the starting node for the search
      * @param neighbors yields the set of neighbors for any vertex
@@ -167,14 +229,23 @@ public class Graphs {
      * @param finished is applied to each vertex after all descendants have been visited
      * (Note: If you don't want to revisit already visited nodes, you need to filter them out.)
      */
-    private static <V> void dfs(V root, Function<V, Set<V>> neighbors, BiPredicate<V, V> filter, Consumer<V> finished) {
-        for (V n : neighbors.apply(root)) {
-            if (filter.test(n, root)) {
-                dfs(n, neighbors, filter, finished);
+    public static <V> void dfs(V root, Function<V, Set<V>> neighbors, BiPredicate<V, V> filter, Consumer<V> finished) {
+        Deque<DfsFrame<V>> stack = new ArrayDeque<>();
+        stack.push(new DfsFrame<>(root, neighbors.apply(root).iterator()));
+        while (!stack.isEmpty()) {
+            var frame = stack.peek();
+            if (frame.remaining().hasNext()) {
+                V n = frame.remaining().next();
+                if (filter.test(n, frame.vertex())) 
+                    stack.push(new DfsFrame<>(n, neighbors.apply(n).iterator()));
+            } else {
+                stack.pop();
+                finished.accept(frame.vertex());
             }
         }
-        finished.accept(root); 
     }
+
+    private record DfsFrame<V>(V vertex, Iterator<V> remaining) {}
     
     /**
      * Topological sort of a directed acyclic graph.
@@ -182,13 +253,47 @@ public class Graphs {
      * @param root the starting node for the sort
      * @param neighbors yields the set of neighbors for any vertex
      * @return a list of nodes so that for every directed edge u → v, u comes before v      
+     * @throws IllegalArgumentException if the graph has a cycle
      */
     public static <V> List<V> topologicalSort(V root, Function<V, Set<V>> neighbors) {
         var sorted = new ArrayList<V>();
-        dfs(root, neighbors, sorted::add);
+        var discovered = new HashSet<V>();
+        var finished = new HashSet<V>();
+        discovered.add(root);
+        dfs(root, neighbors, (v, _) -> {
+            if (discovered.add(v)) return true;
+            if (!finished.contains(v)) throw new IllegalArgumentException("Cycle through " + v);
+            return false;
+        }, v -> {
+            finished.add(v);
+            sorted.add(v);
+        });
         return sorted.reversed();
     }
 
+    /**
+     * Checks whether the graph reachable from a root is acyclic.
+     * @param <V> The type of the graph's vertices
+     * @param root the starting node
+     * @param neighbors yields the set of neighbors for any vertex
+     * @return true if there is no cycle that is reachable from root
+     */
+    public static <V> boolean isAcyclic(V root, Function<V, Set<V>> neighbors) {
+        return isAcyclic(compile(root, neighbors));
+    }
+
+    /**
+     * Computes the strongly connected components of the graph reachable from a root.
+     * @param <V> The type of the graph's vertices
+     * @param root the starting node
+     * @param neighbors yields the set of neighbors for any vertex
+     * @return the components, in topological order: an edge between different components always leads 
+     * to a later one
+     */
+    public static <V> List<Set<V>> stronglyConnectedComponents(V root, Function<V, Set<V>> neighbors) {
+        return condensation(compile(root, neighbors)).vertices();
+    }
+    
     /**
      * Gets all simple paths (without cycles) between two vertices 
      * @param <V> The type of the graph's vertices
@@ -207,9 +312,11 @@ public class Graphs {
      * @param from the starting vertex
      * @param to the ending vertex
      * @param neighbors yields the neighbors of a vertex
-     * @param prune called with paths starting at from. Return false if this path should not be extended
+     * @param prune called with paths starting at from. Return true if this path should not be extended
      * (because it is too long, or has some other undesirable property)
      * @return all simple paths joining from with to  
+     * NOTE: This method collects all paths. Use forEachSimplePath, simplePathStream, or countSimplePaths 
+     * when there are many.
      */
     public static <V> Set<List<V>> simplePaths(V from, V to, Function<V, Set<V>> neighbors, Predicate<List<V>> prune) {
         Queue<List<V>> pathsToExtend = new LinkedList<>();
@@ -230,6 +337,127 @@ public class Graphs {
         return completed;
     }
    
+    /**
+     * Visits simple paths (without cycles) between two vertices, depth first, without collecting them.
+     * @param <V> The type of the graph's vertices
+     * @param from the starting vertex
+     * @param to the ending vertex
+     * @param neighbors yields the neighbors of a vertex
+     * @param prune called with paths starting at from. Return true if this path should not be extended
+     * (because it is too long, or has some other undesirable property)
+     * @param action receives each simple path joining from with to. CAUTION: The path is a view 
+     * that changes after the action returns. Copy it if you need to keep it. 
+     */
+    public static <V> void forEachSimplePath(V from, V to, Function<V, Set<V>> neighbors, Predicate<List<V>> prune, 
+            Consumer<List<V>> action) {
+        var search = new SimplePathSearch<V>(from, to, neighbors, prune);
+        while (search.advance()) action.accept(search.pathView);
+    }
+
+    /**
+     * Yields a lazy stream of the simple paths (without cycles) between two vertices, in depth first order.
+     * @param <V> The type of the graph's vertices
+     * @param from the starting vertex
+     * @param to the ending vertex
+     * @param neighbors yields the neighbors of a vertex
+     * @param prune called with paths starting at from. Return true if this path should not be extended
+     * @return a stream of the simple paths joining from with to. The search advances as the stream is consumed.
+     */
+    public static <V> Stream<List<V>> simplePathStream(V from, V to, Function<V, Set<V>> neighbors, Predicate<List<V>> prune) {
+        var search = new SimplePathSearch<V>(from, to, neighbors, prune);
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<List<V>>(Long.MAX_VALUE, 
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            public boolean tryAdvance(Consumer<? super List<V>> action) {
+                if (!search.advance()) return false;
+                action.accept(List.copyOf(search.path));
+                return true;
+            }
+        }, false);
+    }
+    
+    /**
+     * Counts the simple paths (without cycles) between two vertices, without collecting them.
+     * @param <V> The type of the graph's vertices
+     * @param from the starting vertex
+     * @param to the ending vertex
+     * @param neighbors yields the neighbors of a vertex
+     * @return the number of simple paths joining from with to
+     */
+    public static <V> long countSimplePaths(V from, V to, Function<V, Set<V>> neighbors) {
+        return countSimplePaths(from, to, neighbors, _ -> false);
+    }
+
+    /**
+     * Counts the simple paths (without cycles) between two vertices, pruning fruitless searches.
+     * @param <V> The type of the graph's vertices
+     * @param from the starting vertex
+     * @param to the ending vertex
+     * @param neighbors yields the neighbors of a vertex
+     * @param prune called with paths starting at from. Return true if this path should not be extended
+     * @return the number of simple paths joining from with to
+     */
+    public static <V> long countSimplePaths(V from, V to, Function<V, Set<V>> neighbors, Predicate<List<V>> prune) {
+        var search = new SimplePathSearch<V>(from, to, neighbors, prune);
+        long count = 0;
+        while (search.advance()) count++;
+        return count;
+    }
+    
+    /**
+     * Backtracking search for simple paths, with a single mutable path.
+     */
+    private static class SimplePathSearch<V> {
+        V to;
+        Function<V, Set<V>> neighbors;
+        Predicate<List<V>> prune;
+        List<V> path = new ArrayList<>();
+        List<V> pathView = Collections.unmodifiableList(path);
+        Set<V> onPath = new HashSet<>();
+        Deque<Iterator<V>> remaining = new ArrayDeque<>(); // the unexplored neighbors of each path vertex but the last
+        boolean atEnd; // true if the path ends in to, which is not on the stack
+        
+        SimplePathSearch(V from, V to, Function<V, Set<V>> neighbors, Predicate<List<V>> prune) {
+            this.to = to;
+            this.neighbors = neighbors;
+            this.prune = prune;
+            path.add(from);
+            onPath.add(from);
+            remaining.push(neighbors.apply(from).iterator());
+        }
+        
+        /**
+         * Advances to the next path.
+         * @return true if path is now a simple path from the starting vertex to to, false if there are no more paths
+         */
+        boolean advance() {
+            if (atEnd) {
+                path.removeLast();
+                atEnd = false;
+            }
+            while (!remaining.isEmpty()) {
+                var iter = remaining.peek();
+                if (!iter.hasNext()) {
+                    remaining.pop();
+                    onPath.remove(path.removeLast());
+                } else {
+                    V n = iter.next();
+                    if (!onPath.contains(n)) {
+                        path.add(n);
+                        if (prune.test(pathView)) path.removeLast();
+                        else if (n.equals(to)) {
+                            atEnd = true;
+                            return true;
+                        } else {
+                            onPath.add(n);
+                            remaining.push(neighbors.apply(n).iterator());
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+    }
+    
     /**
      * Computes the minimum costs from a given vertex to all vertices in the graph  
      * @param <V> The type of the graph's vertices
@@ -239,31 +467,10 @@ public class Graphs {
      * @return a map with the cost of the shortest path from the root to each vertex
      */
     public static <V> Map<V, Integer> dijkstraCosts(V root, Function<V, Set<V>> neighbors, ToIntBiFunction<V, V> neighborDistances) {
-        Map<V, Integer> dist = new HashMap<>();
-        Set<V> selected = new HashSet<>();
-        PriorityQueue<Map.Entry<V, Integer>> q = new PriorityQueue<>(
-                Map.Entry.<V, Integer>comparingByValue(Comparator.<Integer>naturalOrder()));
-        q.add(Map.entry(root, 0));
-        dist.put(root, 0);
-        while (q.size() > 0) {
-            var e = q.remove();
-            var s = e.getKey();
-            selected.add(s);
-            // For all unselected neighbors
-            for (var n: neighbors.apply(s)) {
-                if (!selected.contains(n)) {
-                    int snd = neighborDistances.applyAsInt(s,  n);
-                    int nd = dist.getOrDefault(n, Integer.MAX_VALUE);
-                    int sd = dist.getOrDefault(s, Integer.MAX_VALUE);
-                    if (nd > sd + snd) {
-                        q.remove(Map.entry(n, nd));
-                        dist.put(n, sd + snd);
-                        q.add(Map.entry(n, sd + snd));
-                    }
-                }
-            }
-        }
-        return dist;
+        var costs = new Dijkstra<V>().search(root, neighbors, neighborDistances::applyAsInt).costs();
+        var result = new HashMap<V, Integer>();
+        for (var e : costs.entrySet()) result.put(e.getKey(), Math.toIntExact(e.getValue()));
+        return result;
     }
 
     /**
@@ -275,39 +482,13 @@ public class Graphs {
      * @return a map with the predecessor of each vertex on a shortest path
      */
     public static <V> Map<V, V> dijkstraPaths(V from, Function<V, Set<V>> neighbors, ToIntBiFunction<V, V> neighborDistances) {
-        Map<V, Integer> dist = new HashMap<>();
-        Map<V, V> predecessors = new HashMap<>();
-        Set<V> selected = new HashSet<>();
-        PriorityQueue<Map.Entry<V, Integer>> q = new PriorityQueue<>(
-                Map.Entry.<V, Integer>comparingByValue(Comparator.<Integer>naturalOrder()));
-        q.add(Map.entry(from, 0));
-        predecessors.put(from, null);
-        dist.put(from, 0);
-        while (q.size() > 0) {
-            var e = q.remove();
-            var s = e.getKey();
-            selected.add(s);
-            // For all unselected neighbors
-            for (var n: neighbors.apply(s)) {
-                if (!selected.contains(n)) {
-                    int snd = neighborDistances.applyAsInt(s,  n);
-                    int nd = dist.getOrDefault(n, Integer.MAX_VALUE);
-                    int sd = dist.getOrDefault(s, Integer.MAX_VALUE);
-                    if (nd > sd + snd) {
-                        q.remove(Map.entry(n, nd));
-                        dist.put(n, sd + snd);
-                        q.add(Map.entry(n, sd + snd));
-                        predecessors.put(n, s);
-                    }
-                }
-            }
-        }
-        return predecessors;
+        return new Dijkstra<V>().search(from, neighbors, neighborDistances::applyAsInt).predecessorMap();
     }
     
     /**
      * Computes all shortest paths from a given vertex to all vertices in the graph  
-     * NOTE: After calling dijkstraAllPaths, call Graphs.dagPaths(target, preds::get) to get all min cost paths to the target
+     * NOTE: After calling dijkstraAllPaths, call Graphs.dagPaths(target, preds::get) to get all min cost paths to the target.
+     * There can be exponentially many. To count or sample them, use shortestPaths instead.
      * @param <V> The type of the graph's vertices
      * @param root the starting vertex
      * @param neighbors yields the neighbors of a vertex
@@ -315,37 +496,92 @@ public class Graphs {
      * @return a map with the predecessors of each vertex on a shortest path
      */
     public static <V> Map<V, Set<V>> dijkstraAllPaths(V from, Function<V, Set<V>> neighbors, ToIntBiFunction<V, V> neighborDistances) {
-        Map<V, Integer> dist = new HashMap<>();
-        Map<V, Set<V>> predecessors = new HashMap<>();
-        Set<V> selected = new HashSet<>();
-        PriorityQueue<Map.Entry<V, Integer>> q = new PriorityQueue<>(
-                Map.Entry.<V, Integer>comparingByValue(Comparator.<Integer>naturalOrder()));
-        q.add(Map.entry(from, 0));
-        dist.put(from, 0);
-        predecessors.put(from, new HashSet<>());
-        while (q.size() > 0) {
-            var e = q.remove();
-            var s = e.getKey();
-            selected.add(s);
-            // For all unselected neighbors
-            for (var n: neighbors.apply(s)) {
-                if (!selected.contains(n)) {
-                    int snd = neighborDistances.applyAsInt(s,  n);
-                    int nd = dist.getOrDefault(n, Integer.MAX_VALUE);
-                    int sd = dist.getOrDefault(s, Integer.MAX_VALUE);
-                    if (nd > sd + snd) {
-                        q.remove(Map.entry(n, nd));
-                        dist.put(n, sd + snd);
-                        q.add(Map.entry(n, sd + snd));
-                        predecessors.put(n, new HashSet<>(Set.of(s)));
-                    }
-                    else if (nd == sd + snd) {
-                        predecessors.get(n).add(s);
-                    }
-                }
-            }
-        }
-        return predecessors;
+        return new Dijkstra<V>().allPredecessors(true).search(from, neighbors, neighborDistances::applyAsInt).allPredecessorMap();
+    }
+
+    /**
+     * Computes all shortest paths from a given vertex, as a DAG with the number of shortest paths to each vertex.
+     * @param <V> The type of the graph's vertices
+     * @param root the starting vertex
+     * @param neighbors yields the neighbors of a vertex
+     * @param neighborDistances yields the (positive) cost of an edge joining two neighboring vertices
+     * @return the shortest paths
+     * @throws IllegalArgumentException if a reachable edge has a cost that is not positive
+     */
+    public static <V> ShortestPaths<V> shortestPaths(V root, Function<V, Set<V>> neighbors, ToLongBiFunction<V, V> neighborDistances) {
+        return new ShortestPaths<>(compile(root, neighbors, neighborDistances), 0);
+    }
+
+    /**
+     * Computes all shortest paths from a given vertex in a compiled graph, as a DAG with the number of 
+     * shortest paths to each vertex.
+     * @param <V> The type of the graph's vertices
+     * @param graph the graph. If it is unweighted, all edges have cost 1.
+     * @param root the id of the starting vertex
+     * @return the shortest paths
+     * @throws IllegalArgumentException if a reachable edge has a weight that is not positive
+     */
+    public static <V> ShortestPaths<V> shortestPaths(IntGraph<V> graph, int root) {
+        return new ShortestPaths<>(graph, root);
+    }
+
+    /**
+     * The outcome of a search for a goal.
+     * @param <V> The type of the graph's vertices
+     * @param goal the goal that was reached, or null if no goal is reachable
+     * @param cost the cost of the path to the goal, or Long.MAX_VALUE if no goal is reachable
+     * @param path a minimum cost path from the root to the goal, or the empty list if no goal is reachable
+     * @param expanded the number of vertices whose neighbors were explored. The goal is not counted.
+     */
+    public record SearchResult<V>(V goal, long cost, List<V> path, int expanded) {
+        /**
+         * Tests whether a goal was reached. Check this before using the cost.
+         * @return true if a goal was reached
+         */
+        public boolean found() { return goal != null; }
+    }
+    
+    /**
+     * Finds a minimum cost path to a goal with the A* algorithm. The search ends when the first goal is settled.
+     * With the heuristic _ -> 0, this is Dijkstra's algorithm with early termination.
+     * @param <V> The type of the graph's vertices
+     * @param root the starting vertex
+     * @param goal tests whether a vertex is a goal
+     * @param neighbors yields the neighbors of a vertex
+     * @param neighborDistances yields the (nonnegative) cost of an edge joining two neighboring vertices
+     * @param heuristic a consistent estimate of the cost from a vertex to the nearest goal, such 
+     * as taxicabHeuristic or hammingHeuristic
+     * @return the goal, its cost and path, and the number of expanded vertices
+     */
+    public static <V> SearchResult<V> aStar(V root, Predicate<V> goal, Function<V, Set<V>> neighbors, 
+            ToLongBiFunction<V, V> neighborDistances, ToLongFunction<V> heuristic) {
+        var engine = new Dijkstra<V>();
+        V reached = engine.search(root, neighbors, neighborDistances, goal, heuristic);
+        int expanded = engine.settledCount() - (reached == null ? 0 : 1);
+        return new SearchResult<>(reached, engine.cost(reached), engine.path(reached), expanded);
+    }
+    
+    /**
+     * A heuristic for grid searches with N E S W moves of cost at least 1.
+     * @param target the goal location
+     * @return a function that yields the taxicab distance from a location to target 
+     */
+    public static ToLongFunction<Location> taxicabHeuristic(Location target) {
+        return l -> l.taxicabDistance(target);
+    }
+    
+    /**
+     * A heuristic for searches over bit sets in which each step toggles some bits and costs at least 1.
+     * @param target the goal state
+     * @param maxToggled the maximum number of bits that a single step can toggle
+     * @return a function that yields the number of bits that differ from target, divided by maxToggled and rounded up
+     */
+    public static ToLongFunction<BitSet> hammingHeuristic(BitSet target, int maxToggled) {
+        return s -> {
+            var d = (BitSet) s.clone();
+            d.xor(target);
+            return (d.cardinality() + maxToggled - 1) / maxToggled;
+        };
     }
 
     /**
@@ -368,13 +604,29 @@ public class Graphs {
         }
         return components;
         */
-        var uf = new UnionFind<V>();
-        for (var v : vertices) uf.singleton(v);
-        for (var v : vertices) {
+        return connectedComponents(vertices, neighbors, IntUnionFind::new);
+    }
+
+    /**
+     * Computes the connected components of a graph with a given union-find implementation
+     * @param <V> The type of the graph's vertices
+     * @param vertices all vertices of the graph
+     * @param neighbors yields the neighbors of a vertex
+     * @param factory yields the disjoint sets for a given number of vertices, such as IntUnionFind::new. 
+     * If they are concurrent, such as ConcurrentUnionFind::new, the vertices are processed in parallel, 
+     * and neighbors must be thread safe.
+     * @return the connected components 
+     */
+    public static <V> Collection<Set<V>> connectedComponents(Collection<V> vertices, Function<V, Set<V>> neighbors, 
+            IntFunction<? extends DisjointSets> factory) {
+        var uf = new UnionFind<V>(vertices, factory);
+        var stream = vertices.stream();
+        if (uf.disjointSets().isConcurrent()) stream = stream.parallel();
+        stream.forEach(v -> {
             for (var w : neighbors.apply(v)) {
                 uf.unite(v, w);
             }
-        }
+        });
         return uf.sets();
     }
 
@@ -390,71 +642,6 @@ public class Graphs {
         }
     }
     
-    static class UnionFind<V> {
-        private Map<V, Node<V>> nodes = new HashMap<>();
-        private static class Node<V> {
-            Node<V> parent;
-            int rank;
-        }
-
-        /**
-         * Adds a singleton set holding the given element if it is not already present in one of the sets. 
-         * @param element the element to add
-         * @return true if a new singleton set was created, false if the element was already present
-         */
-        public boolean singleton(V element) {
-            if (nodes.containsKey(element)) return false;
-            var node = new Node<V>(); 
-            nodes.put(element, node);
-            return true;
-        }
-        
-        /**
-         * Unites the sets containing the given elements.
-         * @param e an element in one of the sets
-         * @param f another element in one of the sets
-         * @return true if e and f belonged to different sets which have been united,
-         * false if e and f already belonged to the same set
-         */
-        public boolean unite(V e, V f) {
-            if (!nodes.containsKey(e) || !nodes.containsKey(f)) throw new NoSuchElementException();
-            return union(find(nodes.get(e)), find(nodes.get(f)));
-        }
-        
-        /**
-         * The disjoint sets that result from the singleton and unite operations.
-         * @return a collection of the sets
-         */
-        public Collection<Set<V>> sets() {
-            var rootSets = new HashMap<Node<V>, Set<V>>();
-            for (var entry : nodes.entrySet()) {
-                var root = find(entry.getValue());
-                rootSets.computeIfAbsent(root, _ -> new HashSet<>()).add(entry.getKey());
-            }
-            return rootSets.values();
-        }
-        
-        private Node<V> find(Node<V> node) {
-            if (node.parent == null) return node;
-            var parentNode = find(node.parent);
-            node.parent = parentNode;
-            return parentNode;
-        }
-        
-        private boolean union(Node<V> first, Node<V> second) {
-            var firstRoot = find(first);
-            var secondRoot = find(second);
-            if (firstRoot == secondRoot) return false;
-            if (firstRoot.rank < secondRoot.rank) {
-                firstRoot.parent = secondRoot;
-            } else {
-                secondRoot.parent = firstRoot;
-                if (firstRoot.rank == secondRoot.rank) firstRoot.rank++;
-            }
-            return true; 
-        }        
-    }
-    
     /**
      * Computes the minimum spanning tree using Kruskal's algorithm.
      * @param <V>
@@ -464,9 +651,22 @@ public class Graphs {
      * @return the minimum spanning tree, sorted by increasing weight
      */
     public static <V> SortedSet<WeightedEdge<V>> kruskal(Collection<V> vertices, PriorityQueue<WeightedEdge<V>> edges) {
+        return kruskal(vertices, edges, IntUnionFind::new);
+    }
+
+    /**
+     * Computes the minimum spanning tree using Kruskal's algorithm with a given union-find implementation.
+     * @param <V>
+     * @param vertices the vertices of the graph
+     * @param edges a priority queue of the weighted edges, by increasing weight. This queue 
+     * WILL BE EMPTIED!
+     * @param factory yields the disjoint sets for a given number of vertices, such as IntUnionFind::new
+     * @return the minimum spanning tree, sorted by increasing weight
+     */
+    public static <V> SortedSet<WeightedEdge<V>> kruskal(Collection<V> vertices, PriorityQueue<WeightedEdge<V>> edges,
+            IntFunction<? extends DisjointSets> factory) {
         var result = new TreeSet<WeightedEdge<V>>();
-        var uf = new UnionFind<V>();
-        for (var v : vertices) uf.singleton(v);
+        var uf = new UnionFind<V>(vertices, factory);
         while (!edges.isEmpty()) {
             var e = edges.remove();
             if (uf.unite(e.from(), e.to())) {
@@ -476,6 +676,668 @@ public class Graphs {
         return result;
     }
 
+    /**
+     * Caches a neighbor function, so that repeated searches of an implicit graph don't recompute the neighbors. 
+     * @param <V> The type of the graph's vertices
+     * @param neighbors yields the set of neighbors for any vertex
+     * @param capacity the maximum number of cached vertices. When it is reached, the least recently used 
+     * vertices are evicted.
+     * @return a neighbor function that yields the same sets as neighbors
+     */
+    public static <V> NeighborCache<V> cached(Function<V, Set<V>> neighbors, int capacity) {
+        return new NeighborCache<>(neighbors, capacity, false);
+    }
+
+    /**
+     * Caches a neighbor function, so that repeated searches of an implicit graph don't recompute the neighbors. 
+     * @param <V> The type of the graph's vertices
+     * @param neighbors yields the set of neighbors for any vertex
+     * @param capacity the maximum number of cached vertices. When it is reached, the least recently used 
+     * vertices are evicted.
+     * @param concurrent true if the cache may be used by multiple threads, for example in parallel searches
+     * @return a neighbor function that yields the same sets as neighbors
+     */
+    public static <V> NeighborCache<V> cached(Function<V, Set<V>> neighbors, int capacity, boolean concurrent) {
+        return new NeighborCache<>(neighbors, capacity, concurrent);
+    }
+
+    /**
+     * Compiles the graph reachable from a root into compressed sparse row form.
+     * @param <V> The type of the graph's vertices
+     * @param root the starting vertex. It has id 0 in the compiled graph.
+     * @param neighbors yields the set of neighbors for any vertex
+     * @return the compiled graph
+     */
+    public static <V> IntGraph<V> compile(V root, Function<V, Set<V>> neighbors) {
+        return IntGraph.compile(List.of(root), neighbors, null);
+    }
+
+    /**
+     * Compiles the weighted graph reachable from a root into compressed sparse row form.
+     * @param <V> The type of the graph's vertices
+     * @param root the starting vertex. It has id 0 in the compiled graph.
+     * @param neighbors yields the set of neighbors for any vertex
+     * @param neighborDistances yields the cost of an edge joining two neighboring vertices
+     * @return the compiled graph
+     */
+    public static <V> IntGraph<V> compile(V root, Function<V, Set<V>> neighbors, ToLongBiFunction<V, V> neighborDistances) {
+        return IntGraph.compile(List.of(root), neighbors, neighborDistances);
+    }
+
+    /**
+     * Compiles a graph into compressed sparse row form.
+     * @param <V> The type of the graph's vertices
+     * @param vertices the vertices of the graph. They have ids 0, 1, 2, ... in iteration order. 
+     * Vertices that are reachable from them are also included.
+     * @param neighbors yields the set of neighbors for any vertex
+     * @return the compiled graph
+     */
+    public static <V> IntGraph<V> compile(Collection<V> vertices, Function<V, Set<V>> neighbors) {
+        return IntGraph.compile(vertices, neighbors, null);
+    }
+
+    /**
+     * Compiles a weighted graph into compressed sparse row form.
+     * @param <V> The type of the graph's vertices
+     * @param vertices the vertices of the graph. They have ids 0, 1, 2, ... in iteration order. 
+     * Vertices that are reachable from them are also included.
+     * @param neighbors yields the set of neighbors for any vertex
+     * @param neighborDistances yields the cost of an edge joining two neighboring vertices
+     * @return the compiled graph
+     */
+    public static <V> IntGraph<V> compile(Collection<V> vertices, Function<V, Set<V>> neighbors, ToLongBiFunction<V, V> neighborDistances) {
+        return IntGraph.compile(vertices, neighbors, neighborDistances);
+    }
+
+    /**
+     * Breadth first search in a compiled graph
+     * @param graph the graph
+     * @param root the id of the starting vertex
+     * @return an array that maps each vertex id to the id of its predecessor. The root is mapped to itself,
+     * unreachable vertices to -1.
+     */
+    public static int[] bfs(IntGraph<?> graph, int root) {
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int[] parents = new int[graph.size()];
+        Arrays.fill(parents, -1);
+        int[] q = new int[graph.size()];
+        int head = 0;
+        int tail = 0;
+        parents[root] = root;
+        q[tail++] = root;
+        while (head < tail) {
+            int p = q[head++];
+            for (int e = offsets[p]; e < offsets[p + 1]; e++) {
+                int n = targets[e];
+                if (parents[n] == -1) {
+                    parents[n] = p;
+                    q[tail++] = n;
+                }
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Parallel breadth first search in a compiled graph. Each level is expanded across the common
+     * fork-join pool. Small frontiers are expanded top-down from the frontier, large ones bottom-up by
+     * checking whether unvisited vertices have a parent in the frontier (Beamer, Asanović, Patterson, 
+     * Direction-Optimizing Breadth-First Search, 2012).
+     * @param graph the graph
+     * @param root the id of the starting vertex
+     * @return an array that maps each vertex id to the id of a predecessor in a breadth first tree. 
+     * The root is mapped to itself, unreachable vertices to -1. If a vertex has multiple predecessors 
+     * at the previous level, any one of them can be chosen. 
+     */
+    public static int[] parallelBfs(IntGraph<?> graph, int root) {
+        int[] parents = new int[graph.size()];
+        parallelBfs(graph, root, parents, new int[graph.size()]);
+        return parents;
+    }
+
+    /**
+     * Parallel breadth first search in a compiled graph, yielding the number of edges from the root
+     * to each vertex.
+     * @param graph the graph
+     * @param root the id of the starting vertex
+     * @return an array that maps each vertex id to its distance from the root, or -1 if it is unreachable
+     */
+    public static int[] parallelBfsDistances(IntGraph<?> graph, int root) {
+        int[] distances = new int[graph.size()];
+        parallelBfs(graph, root, new int[graph.size()], distances);
+        return distances;
+    }
+
+    private static final int BFS_ALPHA = 14; // switch to bottom-up when frontier edges exceed unexplored edges / ALPHA
+    private static final int BFS_BETA = 24; // switch back to top-down when the frontier is smaller than vertices / BETA
+    private static final int BFS_CHUNK = 1024; // minimum number of vertices per parallel task
+
+    private static void parallelBfs(IntGraph<?> graph, int root, int[] parents, int[] distances) {
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        Arrays.fill(parents, -1);
+        Arrays.fill(distances, -1);
+        var visited = new AtomicLongArray((n + 63) / 64);
+        visited.set(root / 64, 1L << root);
+        parents[root] = root;
+        distances[root] = 0;
+        int[] frontier = { root };
+        long unexploredEdges = graph.edgeCount() - graph.degree(root);
+        boolean bottomUp = false;
+        for (int level = 1; frontier.length > 0; level++) {
+            int[] current = frontier;
+            long frontierEdges = Arrays.stream(current).parallel().mapToLong(graph::degree).sum();
+            if (!bottomUp && frontierEdges > unexploredEdges / BFS_ALPHA) bottomUp = true;
+            else if (bottomUp && current.length < n / BFS_BETA) bottomUp = false;
+            int d = level;
+            int[][] found;
+            if (bottomUp) {
+                var reverse = graph.transposed();
+                int[] reverseOffsets = reverse.offsets();
+                int[] reverseTargets = reverse.targets();
+                long[] inFrontier = new long[(n + 63) / 64];
+                for (int u : current) inFrontier[u / 64] |= 1L << u;
+                int chunks = (n + BFS_CHUNK - 1) / BFS_CHUNK;
+                found = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+                    var next = new IntArrayBuilder();
+                    for (int v = c * BFS_CHUNK; v < Math.min(n, (c + 1) * BFS_CHUNK); v++) {
+                        if ((visited.get(v / 64) & 1L << v) != 0) continue;
+                        for (int e = reverseOffsets[v]; e < reverseOffsets[v + 1]; e++) {
+                            int u = reverseTargets[e];
+                            if ((inFrontier[u / 64] & 1L << u) != 0) {
+                                visited.getAndAccumulate(v / 64, 1L << v, (x, y) -> x | y);
+                                parents[v] = u;
+                                distances[v] = d;
+                                next.add(v);
+                                break;
+                            }
+                        }
+                    }
+                    return next.toArray();
+                }).toArray(int[][]::new);
+            } else {
+                int chunks = (current.length + BFS_CHUNK - 1) / BFS_CHUNK;
+                var stream = IntStream.range(0, chunks);
+                if (chunks > 1) stream = stream.parallel();
+                found = stream.mapToObj(c -> {
+                    var next = new IntArrayBuilder();
+                    for (int i = c * BFS_CHUNK; i < Math.min(current.length, (c + 1) * BFS_CHUNK); i++) {
+                        int u = current[i];
+                        for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                            int v = targets[e];
+                            long bit = 1L << v;
+                            if ((visited.get(v / 64) & bit) == 0 
+                                    && (visited.getAndAccumulate(v / 64, bit, (x, y) -> x | y) & bit) == 0) {
+                                parents[v] = u;
+                                distances[v] = d;
+                                next.add(v);
+                            }
+                        }
+                    }
+                    return next.toArray();
+                }).toArray(int[][]::new);
+            }
+            int size = 0;
+            for (int[] f : found) size += f.length;
+            frontier = new int[size];
+            size = 0;
+            for (int[] f : found) {
+                System.arraycopy(f, 0, frontier, size, f.length);
+                size += f.length;
+            }
+            unexploredEdges -= Arrays.stream(frontier).parallel().mapToLong(graph::degree).sum();
+        }
+    }
+
+    /**
+     * A growable int array.
+     */
+    private static class IntArrayBuilder {
+        private int[] elements = new int[16];
+        private int size;
+
+        void add(int e) {
+            if (size == elements.length) elements = Arrays.copyOf(elements, 2 * size);
+            elements[size++] = e;
+        }
+
+        int[] toArray() { return Arrays.copyOf(elements, size); }
+    }
+
+    /**
+     * Depth first search in a compiled graph
+     * @param graph the graph
+     * @param root the id of the starting vertex
+     * @return an array that maps each vertex id to the id of its predecessor. The root is mapped to itself,
+     * unreachable vertices to -1.
+     */
+    public static int[] dfs(IntGraph<?> graph, int root) {
+        int[] parents = new int[graph.size()];
+        Arrays.fill(parents, -1);
+        parents[root] = root;
+        dfs(graph, root, parents, _ -> {}, null);
+        return parents;
+    }
+
+    /**
+     * Depth first search in a compiled graph, without recursion. 
+     * @param graph the graph
+     * @param root the id of the starting vertex
+     * @param parents maps vertex ids to predecessor ids. Vertices with value -1 are undiscovered. 
+     * The root must already be discovered.
+     * @param finished is applied to each vertex after all descendants have been visited 
+     * @param done if not null, marks the finished vertices, and an IllegalArgumentException is thrown
+     * when an edge leads back to a vertex that has been discovered but not finished
+     */
+    private static void dfs(IntGraph<?> graph, int root, int[] parents, IntConsumer finished, boolean[] done) {
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int[] stack = new int[graph.size()];
+        int[] cursors = new int[graph.size()]; // next edge to explore for each stack frame
+        int top = 0;
+        stack[0] = root;
+        cursors[0] = offsets[root];
+        while (top >= 0) {
+            int v = stack[top];
+            if (cursors[top] < offsets[v + 1]) {
+                int n = targets[cursors[top]++];
+                if (parents[n] == -1) {
+                    parents[n] = v;
+                    top++;
+                    stack[top] = n;
+                    cursors[top] = offsets[n];
+                } else if (done != null && !done[n]) {
+                    throw new IllegalArgumentException("Cycle through " + graph.vertex(n));
+                }
+            } else {
+                finished.accept(v);
+                if (done != null) done[v] = true;
+                top--;
+            }
+        }
+    }
+
+    /**
+     * Topological sort of a compiled directed acyclic graph.
+     * @param graph the graph
+     * @param root the id of the starting vertex
+     * @return the ids of the vertices reachable from root, so that for every directed edge u → v, u comes before v      
+     * @throws IllegalArgumentException if the graph has a cycle
+     */
+    public static int[] topologicalSort(IntGraph<?> graph, int root) {
+        int[] parents = new int[graph.size()];
+        Arrays.fill(parents, -1);
+        parents[root] = root;
+        int[] sorted = new int[graph.size()];
+        int[] n = { graph.size() };
+        dfs(graph, root, parents, v -> sorted[--n[0]] = v, new boolean[graph.size()]);
+        return Arrays.copyOfRange(sorted, n[0], sorted.length);
+    }
+
+    /**
+     * Topological sort of all vertices of a compiled directed acyclic graph.
+     * @param graph the graph
+     * @return the ids of all vertices, so that for every directed edge u → v, u comes before v      
+     * @throws IllegalArgumentException if the graph has a cycle
+     */
+    public static int[] topologicalSort(IntGraph<?> graph) {
+        int[] parents = new int[graph.size()];
+        Arrays.fill(parents, -1);
+        int[] sorted = new int[graph.size()];
+        int[] n = { graph.size() };
+        var done = new boolean[graph.size()];
+        for (int root = 0; root < graph.size(); root++) {
+            if (parents[root] == -1) {
+                parents[root] = root;
+                dfs(graph, root, parents, v -> sorted[--n[0]] = v, done);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Computes the strongly connected components of a compiled graph with Tarjan's algorithm, without recursion.
+     * @param graph the graph
+     * @return an array that maps each vertex id to the number of its component. The components are 
+     * numbered 0, 1, 2, ... in topological order: For every edge u → v between different components, 
+     * the component of u has a smaller number than the component of v.
+     */
+    public static int[] stronglyConnectedComponents(IntGraph<?> graph) {
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int[] index = new int[n];
+        Arrays.fill(index, -1);
+        int[] low = new int[n];
+        var onStack = new boolean[n];
+        int[] stack = new int[n]; // Tarjan's stack of vertices whose component is not yet known
+        int stackSize = 0;
+        int[] frames = new int[n]; // the vertices of the depth first search
+        int[] cursors = new int[n]; // next edge to explore for each frame
+        int[] components = new int[n];
+        int count = 0;
+        int nextIndex = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) continue;
+            int top = 0;
+            frames[0] = root;
+            cursors[0] = offsets[root];
+            index[root] = low[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (top >= 0) {
+                int v = frames[top];
+                if (cursors[top] < offsets[v + 1]) {
+                    int w = targets[cursors[top]++];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = nextIndex++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        top++;
+                        frames[top] = w;
+                        cursors[top] = offsets[w];
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                } else {
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            components[w] = count;
+                        } while (w != v);
+                        count++;
+                    }
+                    top--;
+                    if (top >= 0) low[frames[top]] = Math.min(low[frames[top]], low[v]);
+                }
+            }
+        }
+        // Tarjan's algorithm finds the components in reverse topological order
+        for (int v = 0; v < n; v++) components[v] = count - 1 - components[v];
+        return components;
+    }
+
+    /**
+     * Computes the condensation of a compiled graph, obtained by contracting each strongly connected 
+     * component to a vertex. It is always acyclic.
+     * @param <V> The type of the graph's vertices
+     * @param graph the graph
+     * @return the graph whose vertices are the strongly connected components, with an edge between two 
+     * components if the graph has an edge between their elements. The vertex ids are in topological order. 
+     * Edge weights are the minimum weights of the contracted edges. 
+     */
+    public static <V> IntGraph<Set<V>> condensation(IntGraph<V> graph) {
+        int[] components = stronglyConnectedComponents(graph);
+        int count = 0;
+        for (int c : components) count = Math.max(count, c + 1);
+        var sets = new ArrayList<Set<V>>();
+        for (int c = 0; c < count; c++) sets.add(new HashSet<>());
+        for (int v = 0; v < graph.size(); v++) sets.get(components[v]).add(graph.vertex(v));
+        int[] byComponent = new int[graph.size()];
+        int[] starts = new int[count + 1];
+        for (int c : components) starts[c + 1]++;
+        for (int c = 0; c < count; c++) starts[c + 1] += starts[c];
+        int[] next = Arrays.copyOf(starts, count);
+        for (int v = 0; v < graph.size(); v++) byComponent[next[components[v]]++] = v;
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int[] condensedOffsets = new int[count + 1];
+        int[] condensedTargets = new int[graph.edgeCount()]; // there are at most as many edges as in the graph
+        long[] condensedWeights = new long[graph.edgeCount()];
+        int edges = 0;
+        int[] lastSeen = new int[count]; // the index of the edge to each component, if added for the current component
+        Arrays.fill(lastSeen, -1);
+        for (int c = 0; c < count; c++) {
+            int first = edges;
+            for (int i = starts[c]; i < starts[c + 1]; i++) {
+                int v = byComponent[i];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int d = components[targets[e]];
+                    if (d == c) continue;
+                    int k = lastSeen[d];
+                    if (k < first) {
+                        lastSeen[d] = edges;
+                        condensedTargets[edges] = d;
+                        condensedWeights[edges] = graph.weight(e);
+                        edges++;
+                    } else {
+                        condensedWeights[k] = Math.min(condensedWeights[k], graph.weight(e));
+                    }
+                }
+            }
+            condensedOffsets[c + 1] = edges;
+        }
+        var ids = new HashMap<Set<V>, Integer>();
+        for (int c = 0; c < count; c++) ids.put(sets.get(c), c);
+        return new IntGraph<>(sets, ids, condensedOffsets, Arrays.copyOf(condensedTargets, edges),
+            graph.weights() == null ? null : Arrays.copyOf(condensedWeights, edges));
+    }
+
+    /**
+     * Checks whether a compiled graph is acyclic.
+     * @param graph the graph
+     * @return true if the graph has no cycles (including self loops)
+     */
+    public static boolean isAcyclic(IntGraph<?> graph) {
+        int[] components = stronglyConnectedComponents(graph);
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        for (int v = 0; v < graph.size(); v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++)
+                if (components[targets[e]] == components[v]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the minimum costs from a given vertex to all vertices in a compiled graph.  
+     * @param graph the graph. If it is unweighted, all edges have cost 1.
+     * @param root the id of the starting vertex
+     * @return an array with the cost of the shortest path from the root to each vertex, 
+     * or Long.MAX_VALUE if the vertex is unreachable
+     */
+    public static long[] dijkstraCosts(IntGraph<?> graph, int root) {
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        long[] dist = new long[graph.size()];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        dist[root] = 0;
+        var q = new IndexedHeap(graph.size());
+        q.push(root, 0);
+        while (!q.isEmpty()) {
+            int s = q.pop();
+            long d = dist[s];
+            for (int e = offsets[s]; e < offsets[s + 1]; e++) {
+                int n = targets[e];
+                long nd = d + graph.weight(e);
+                if (nd < dist[n]) {
+                    dist[n] = nd;
+                    q.push(n, nd);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Computes the connected components of a compiled graph, ignoring edge directions.
+     * @param graph the graph
+     * @return an array that maps each vertex id to the number of its component. Components are numbered
+     * 0, 1, 2, ... in the order of their smallest vertex id.
+     */
+    public static int[] connectedComponents(IntGraph<?> graph) {
+        return connectedComponents(graph, new IntUnionFind(graph.size()));
+    }
+
+    /**
+     * Computes the connected components of a compiled graph, ignoring edge directions, with given disjoint sets.
+     * @param graph the graph
+     * @param sets singleton disjoint sets for the vertex ids. If they are concurrent, the edges are 
+     * processed in parallel.
+     * @return an array that maps each vertex id to the number of its component. Components are numbered
+     * 0, 1, 2, ... in the order of their smallest vertex id.
+     */
+    public static int[] connectedComponents(IntGraph<?> graph, DisjointSets sets) {
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        var vs = IntStream.range(0, graph.size());
+        if (sets.isConcurrent()) vs = vs.parallel();
+        vs.forEach(v -> {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++)
+                sets.unite(v, targets[e]);
+        });
+        return sets.labels();
+    }
+
+    /**
+     * Computes the minimum spanning tree of the complete graph of points in 3-space, weighted by 
+     * squared Euclidean distance, without materializing all edges. 
+     * @param <V> The type of the points
+     * @param points the points
+     * @param x yields the x-coordinate of a point
+     * @param y yields the y-coordinate of a point
+     * @param z yields the z-coordinate of a point
+     * @return the minimum spanning tree, sorted by increasing weight, as in kruskal. Edges of equal weight 
+     * are sorted by the index of from in the list of points, then by the index of to, and from comes before to. 
+     * The tree and its last edge are those that Kruskal's algorithm yields when it considers edges in this order. 
+     * If the points are distinct, the tree has points.size() - 1 edges. Equal points are joined by edges 
+     * of weight 0 that are equal to each other, and only one of them is kept.
+     */
+    public static <V> SortedSet<WeightedEdge<V>> euclideanMst(List<V> points, 
+            ToIntFunction<V> x, ToIntFunction<V> y, ToIntFunction<V> z) {
+        int n = points.size();
+        var xs = new long[n];
+        var ys = new long[n];
+        var zs = new long[n];
+        for (int i = 0; i < n; i++) {
+            var p = points.get(i);
+            xs[i] = x.applyAsInt(p);
+            ys[i] = y.applyAsInt(p);
+            zs[i] = z.applyAsInt(p);
+        }
+        // WeightedEdge.compareTo only compares weights, which would merge edges of equal weight
+        var ids = new HashMap<V, Integer>();
+        for (int i = 0; i < n; i++) ids.putIfAbsent(points.get(i), i);
+        var result = new TreeSet<WeightedEdge<V>>(Comparator.<WeightedEdge<V>>comparingLong(WeightedEdge::weight)
+            .thenComparingInt(e -> ids.get(e.from()))
+            .thenComparingInt(e -> ids.get(e.to())));
+        for (int[] e : new EuclideanMst(xs, ys, zs).edges()) {
+            long dx = xs[e[0]] - xs[e[1]];
+            long dy = ys[e[0]] - ys[e[1]];
+            long dz = zs[e[0]] - zs[e[1]];
+            result.add(new WeightedEdge<>(points.get(e[0]), points.get(e[1]), dx * dx + dy * dy + dz * dz));
+        }
+        if (ids.size() == n && result.size() != Math.max(0, n - 1)) 
+            throw new IllegalStateException("Spanning tree of " + n + " points has " + result.size() + " edges");
+        return result;
+    }
+
+    /**
+     * Finds all maximal cliques of an undirected graph, with the Bron–Kerbosch algorithm.
+     * @param <V> The type of the graph's vertices
+     * @param vertices all vertices of the graph
+     * @param neighbors yields the neighbors of a vertex. The graph is made undirected by joining u and v
+     * if u is a neighbor of v or v is a neighbor of u. 
+     * @return the maximal cliques
+     */
+    public static <V> List<Set<V>> maximalCliques(Collection<V> vertices, Function<V, Set<V>> neighbors) {
+        var result = new ArrayList<Set<V>>();
+        new Cliques<V>(vertices, neighbors).maximalCliques(false, result::add);
+        return result;
+    }
+
+    /**
+     * Visits all maximal cliques of an undirected graph, with the Bron–Kerbosch algorithm.
+     * @param <V> The type of the graph's vertices
+     * @param vertices all vertices of the graph
+     * @param neighbors yields the neighbors of a vertex. The graph is made undirected by joining u and v
+     * if u is a neighbor of v or v is a neighbor of u. 
+     * @param parallel true if the search should be split across the common fork-join pool
+     * @param action receives each maximal clique. If parallel is true, it must be thread safe.
+     */
+    public static <V> void maximalCliques(Collection<V> vertices, Function<V, Set<V>> neighbors, boolean parallel, 
+            Consumer<Set<V>> action) {
+        new Cliques<V>(vertices, neighbors).maximalCliques(parallel, action);
+    }
+
+    /**
+     * Finds a clique of maximum size in an undirected graph.
+     * @param <V> The type of the graph's vertices
+     * @param vertices all vertices of the graph
+     * @param neighbors yields the neighbors of a vertex. The graph is made undirected by joining u and v
+     * if u is a neighbor of v or v is a neighbor of u. 
+     * @return a maximum clique
+     */
+    public static <V> Set<V> maximumClique(Collection<V> vertices, Function<V, Set<V>> neighbors) {
+        return new Cliques<V>(vertices, neighbors).maximumClique(false);
+    }
+
+    /**
+     * Finds a clique of maximum size in an undirected graph.
+     * @param <V> The type of the graph's vertices
+     * @param vertices all vertices of the graph
+     * @param neighbors yields the neighbors of a vertex. The graph is made undirected by joining u and v
+     * if u is a neighbor of v or v is a neighbor of u. 
+     * @param parallel true if the search should be split across the common fork-join pool
+     * @return a maximum clique
+     */
+    public static <V> Set<V> maximumClique(Collection<V> vertices, Function<V, Set<V>> neighbors, boolean parallel) {
+        return new Cliques<V>(vertices, neighbors).maximumClique(parallel);
+    }
+
+    /**
+     * Limits for the GraphViz output of large graphs.
+     * @param maxVertices the maximum number of vertices to visit
+     * @param maxEdges the maximum number of edges to emit
+     * @param sampleRate the probability with which each edge is emitted
+     * @param seed the seed for the random choice of edges
+     * @param clusters true if each weakly connected component of the visited vertices should be grouped 
+     * into a cluster subgraph
+     */
+    public record DotOptions(int maxVertices, int maxEdges, double sampleRate, long seed, boolean clusters) {
+        /**
+         * Emits all vertices and edges, without clusters.
+         */
+        public static final DotOptions ALL = new DotOptions(Integer.MAX_VALUE, Integer.MAX_VALUE, 1, 0, false);
+        
+        /**
+         * @param maxVertices the maximum number of vertices to visit
+         * @return these options with the given vertex limit
+         */
+        public DotOptions withMaxVertices(int maxVertices) {
+            return new DotOptions(maxVertices, maxEdges, sampleRate, seed, clusters);
+        }
+
+        /**
+         * @param maxEdges the maximum number of edges to emit
+         * @return these options with the given edge limit
+         */
+        public DotOptions withMaxEdges(int maxEdges) {
+            return new DotOptions(maxVertices, maxEdges, sampleRate, seed, clusters);
+        }
+
+        /**
+         * @param sampleRate the probability with which each edge is emitted
+         * @param seed the seed for the random choice of edges
+         * @return these options with the given sampling
+         */
+        public DotOptions withSampling(double sampleRate, long seed) {
+            return new DotOptions(maxVertices, maxEdges, sampleRate, seed, clusters);
+        }
+
+        /**
+         * @param clusters true if each weakly connected component should be grouped into a cluster subgraph
+         * @return these options with the given clustering
+         */
+        public DotOptions withClusters(boolean clusters) {
+            return new DotOptions(maxVertices, maxEdges, sampleRate, seed, clusters);
+        }
+    }
+
     /**
      * Formats the description of this graph in the GraphViz dot language.
      * @param <V> The type of the graph's vertices
@@ -487,16 +1349,122 @@ public class Graphs {
      */    
     public static <V> String dot(V root, Function<V, Set<V>> neighbors, BiFunction<V, V, Object> edgeLabels) {
         var builder = new StringBuilder();
-        builder.append("digraph {\n");
-        for (var from: dfs(root, neighbors).keySet()) {
-            for (var to: neighbors.apply(from)) {
-                var label = edgeLabels.apply(from, to);
-                builder.append("   \"%s\" -> \"%s\"".formatted(from, to));
-                if (label != null) builder.append("[label=\"%s\"]".formatted(label));
-                builder.append("\n");
-            }
-        }  
-        builder.append("}\n");
+        try {
+            dot(List.of(root), neighbors, edgeLabels, builder, DotOptions.ALL);
+        } catch (IOException ex) { // Can't happen with a StringBuilder
+            throw new UncheckedIOException(ex);
+        }
         return builder.toString();
     }
+
+    /**
+     * Writes the description of a graph in the GraphViz dot language to a file.
+     * @param <V> The type of the graph's vertices
+     * @param roots the starting vertices
+     * @param neighbors yields the neighbors of a vertex
+     * @param edgeLabels yields the label of an edge joining neighboring vertices, or null if no edge label is desired
+     * @param path the file to write
+     * @param options the limits for the output
+     * @throws IOException if the file can't be written
+     */
+    public static <V> void dot(Collection<V> roots, Function<V, Set<V>> neighbors, BiFunction<V, V, Object> edgeLabels, 
+            Path path, DotOptions options) throws IOException {
+        try (var out = Files.newBufferedWriter(path)) {
+            dot(roots, neighbors, edgeLabels, out, options);
+        }
+    }
+
+    /**
+     * Writes the description of a graph in the GraphViz dot language, visiting the vertices in a single
+     * breadth-first traversal. Without clusters, nothing is buffered, so pass a BufferedWriter when writing 
+     * to a file or stream. With clusters, the emitted edges are held until the traversal is complete.
+     * @param <V> The type of the graph's vertices
+     * @param roots the starting vertices
+     * @param neighbors yields the neighbors of a vertex
+     * @param edgeLabels yields the label of an edge joining neighboring vertices, or null if no edge label is desired
+     * @param out the destination
+     * @param options the limits for the output
+     * @throws IOException if out throws it
+     */
+    public static <V> void dot(Collection<V> roots, Function<V, Set<V>> neighbors, BiFunction<V, V, Object> edgeLabels, 
+            Appendable out, DotOptions options) throws IOException {
+        out.append("digraph {\n");
+        var random = new Random(options.seed());
+        var ids = new HashMap<V, Integer>();
+        var vertices = new ArrayList<V>();
+        var components = new IntUnionFind(0);
+        var clusterEdges = new ArrayList<int[]>();
+        var clusterLabels = new ArrayList<Object>();
+        var queue = new ArrayDeque<V>();
+        int edges = 0;
+        for (var root : roots) {
+            if (ids.size() >= options.maxVertices() || edges >= options.maxEdges()) break;
+            if (ids.putIfAbsent(root, vertices.size()) != null) continue;
+            vertices.add(root);
+            components.add();
+            queue.add(root);
+            while (!queue.isEmpty() && edges < options.maxEdges()) {
+                var from = queue.remove();
+                for (var to : neighbors.apply(from)) {
+                    if (!ids.containsKey(to)) {
+                        if (ids.size() >= options.maxVertices()) continue;
+                        ids.put(to, vertices.size());
+                        vertices.add(to);
+                        components.add();
+                        queue.add(to);
+                    }
+                    if (options.clusters()) components.unite(ids.get(from), ids.get(to));
+                    if (edges < options.maxEdges() && (options.sampleRate() >= 1 || random.nextDouble() < options.sampleRate())) {
+                        var label = edgeLabels.apply(from, to);
+                        if (options.clusters()) {
+                            clusterEdges.add(new int[] { ids.get(from), ids.get(to) });
+                            clusterLabels.add(label);
+                        } else {
+                            writeEdge(out, "   ", from, to, label);
+                        }
+                        edges++;
+                    }
+                }
+            }
+            queue.clear();
+        }
+        if (options.clusters()) {
+            // One cluster per weakly connected component, in the order in which they were discovered
+            var clusters = new HashMap<Integer, Integer>();
+            var members = new ArrayList<List<Integer>>();
+            var memberEdges = new ArrayList<List<Integer>>();
+            for (int v = 0; v < vertices.size(); v++) {
+                int cluster = clusters.computeIfAbsent(components.find(v), _ -> members.size());
+                if (cluster == members.size()) {
+                    members.add(new ArrayList<>());
+                    memberEdges.add(new ArrayList<>());
+                }
+                members.get(cluster).add(v);
+            }
+            for (int e = 0; e < clusterEdges.size(); e++) 
+                memberEdges.get(clusters.get(components.find(clusterEdges.get(e)[0]))).add(e);
+            for (int cluster = 0; cluster < members.size(); cluster++) {
+                out.append("   subgraph cluster_").append(String.valueOf(cluster)).append(" {\n");
+                for (int v : members.get(cluster)) out.append("      ").append(quote(vertices.get(v))).append("\n");
+                for (int e : memberEdges.get(cluster)) {
+                    int[] edge = clusterEdges.get(e);
+                    writeEdge(out, "      ", vertices.get(edge[0]), vertices.get(edge[1]), clusterLabels.get(e));
+                }
+                out.append("   }\n");
+            }
+        }
+        out.append("}\n");
+    }
+
+    private static void writeEdge(Appendable out, String indent, Object from, Object to, Object label) throws IOException {
+        out.append(indent).append(quote(from)).append(" -> ").append(quote(to));
+        if (label != null) out.append(" [label=").append(quote(label)).append("]");
+        out.append("\n");
+    }
+
+    private static String quote(Object obj) {
+        var s = obj.toString();
+        if (s.indexOf('"') < 0 && s.indexOf('\\') < 0) return "\"" + s + "\"";
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * The regions of a CharGrid: maximal connected sets of cells with the same contents. 
+ * Cells are connected through their N E S W neighbors, and optionally also through their 
+ * diagonal neighbors. Regions are numbered 0, 1, 2, ... in the row-major order of their first cells.
+ * The labeling uses the classic two-pass algorithm. The first pass gives each cell the label of an 
+ * earlier neighbor in the same region, or a new provisional label, and records which provisional labels
+ * meet in a union-find structure. The second pass replaces each provisional label with its final one.
+ * In parallel mode, the first pass labels bands of rows independently, and the labels of adjacent cells 
+ * in the seams between bands are then united. The sizes, perimeters, and bounding boxes are accumulated
+ * for groups of rows in parallel and then merged.
+ * Obtain instances with CharGrid.labelRegions.
+ */
+public class GridLabels {
+    private final CharGrid grid;
+    private final int rows;
+    private final int cols;
+    private final int[] labels;
+    private final int count;
+    private final int[] sizes;
+    private final int[] perimeters;
+    private final int[] minRows, maxRows, minCols, maxCols;
+
+    GridLabels(CharGrid grid, boolean diagonal, boolean parallel) {
+        this.grid = grid;
+        rows = grid.rows();
+        cols = grid.cols();
+        labels = new int[rows * cols];
+        int bands = parallel ? Math.max(1, Math.min(rows, 4 * Runtime.getRuntime().availableProcessors())) : 1;
+        int[] bandStarts = new int[bands + 1];
+        for (int b = 0; b <= bands; b++) bandStarts[b] = (int) ((long) rows * b / bands);
+        var provisional = new IntUnionFind[bands];
+        var stream = IntStream.range(0, bands);
+        (parallel ? stream.parallel() : stream)
+            .forEach(b -> provisional[b] = firstPass(grid, bandStarts[b], bandStarts[b + 1], diagonal));
+        
+        // Combine the provisional labels of all bands into one union-find structure
+        int[] offsets = new int[bands + 1];
+        for (int b = 0; b < bands; b++) offsets[b + 1] = offsets[b] + provisional[b].size();
+        var sets = new IntUnionFind(offsets[bands]);
+        for (int b = 0; b < bands; b++)
+            for (int l = 0; l < provisional[b].size(); l++) sets.unite(offsets[b] + l, offsets[b] + provisional[b].find(l));
+        for (int b = 1; b < bands; b++) {
+            int r = bandStarts[b];
+            for (int c = 0; c < cols; c++) {
+                char ch = grid.getChar(r, c);
+                int i = r * cols + c;
+                for (int dc = diagonal ? -1 : 0; dc <= (diagonal ? 1 : 0); dc++) {
+                    if (c + dc >= 0 && c + dc < cols && grid.getChar(r - 1, c + dc) == ch)
+                        sets.unite(offsets[b] + labels[i], offsets[b - 1] + labels[i - cols + dc]);
+                }
+            }
+        }
+
+        // Number the regions in the order of their first provisional labels, which is the row-major order of their first cells
+        int[] finalLabels = new int[offsets[bands]];
+        int[] rootLabels = new int[offsets[bands]];
+        Arrays.fill(rootLabels, -1);
+        int n = 0;
+        for (int p = 0; p < finalLabels.length; p++) {
+            int root = sets.find(p);
+            if (rootLabels[root] < 0) rootLabels[root] = n++;
+            finalLabels[p] = rootLabels[root];
+        }
+        count = n;
+        stream = IntStream.range(0, bands);
+        (parallel ? stream.parallel() : stream).forEach(b -> {
+            for (int i = bandStarts[b] * cols; i < bandStarts[b + 1] * cols; i++) labels[i] = finalLabels[offsets[b] + labels[i]];
+        });
+
+        // Accumulate the statistics of groups of rows in parallel, then merge them. Each group needs arrays  
+        // of length count, so there are fewer groups when there are many small regions.
+        int groups = parallel ? (int) Math.max(1, Math.min(bands, (long) rows * cols / Math.max(1, count))) : 1;
+        var partials = new Stats[groups];
+        stream = IntStream.range(0, groups);
+        (parallel ? stream.parallel() : stream).forEach(g -> 
+            partials[g] = accumulate((int) ((long) rows * g / groups), (int) ((long) rows * (g + 1) / groups)));
+        var stats = partials[0];
+        stream = IntStream.range(0, count);
+        (parallel ? stream.parallel() : stream).forEach(l -> {
+            for (int g = 1; g < groups; g++) stats.merge(partials[g], l);
+        });
+        sizes = stats.sizes;
+        perimeters = stats.perimeters;
+        minRows = stats.minRows;
+        maxRows = stats.maxRows;
+        minCols = stats.minCols;
+        maxCols = stats.maxCols;
+    }
+
+    /**
+     * The sizes, perimeters, and bounding boxes of the parts of all regions in a group of rows.
+     */
+    private static class Stats {
+        final int[] sizes;
+        final int[] perimeters;
+        final int[] minRows, maxRows, minCols, maxCols;
+
+        Stats(int count) {
+            sizes = new int[count];
+            perimeters = new int[count];
+            minRows = new int[count];
+            maxRows = new int[count];
+            minCols = new int[count];
+            maxCols = new int[count];
+            Arrays.fill(minRows, Integer.MAX_VALUE);
+            Arrays.fill(minCols, Integer.MAX_VALUE);
+        }
+
+        void merge(Stats other, int l) {
+            sizes[l] += other.sizes[l];
+            perimeters[l] += other.perimeters[l];
+            minRows[l] = Math.min(minRows[l], other.minRows[l]);
+            maxRows[l] = Math.max(maxRows[l], other.maxRows[l]);
+            minCols[l] = Math.min(minCols[l], other.minCols[l]);
+            maxCols[l] = Math.max(maxCols[l], other.maxCols[l]);
+        }
+    }
+
+    /**
+     * Computes the statistics of the rows from ... to - 1.
+     */
+    private Stats accumulate(int from, int to) {
+        var stats = new Stats(count);
+        for (int r = from; r < to; r++) {
+            for (int c = 0; c < cols; c++) {
+                int i = r * cols + c;
+                int l = labels[i];
+                stats.sizes[l]++;
+                stats.minRows[l] = Math.min(stats.minRows[l], r);
+                stats.maxRows[l] = Math.max(stats.maxRows[l], r);
+                stats.minCols[l] = Math.min(stats.minCols[l], c);
+                stats.maxCols[l] = Math.max(stats.maxCols[l], c);
+                if (r == 0 || labels[i - cols] != l) stats.perimeters[l]++;
+                if (r == rows - 1 || labels[i + cols] != l) stats.perimeters[l]++;
+                if (c == 0 || labels[i - 1] != l) stats.perimeters[l]++;
+                if (c == cols - 1 || labels[i + 1] != l) stats.perimeters[l]++;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Labels the rows from ... to - 1 with provisional labels.
+     * @return the union-find structure of the provisional labels
+     */
+    private IntUnionFind firstPass(CharGrid grid, int from, int to, boolean diagonal) {
+        var sets = new IntUnionFind(0);
+        for (int r = from; r < to; r++) {
+            for (int c = 0; c < cols; c++) {
+                char ch = grid.getChar(r, c);
+                int i = r * cols + c;
+                int label = -1;
+                if (c > 0 && grid.getChar(r, c - 1) == ch) label = labels[i - 1];
+                if (r > from) {
+                    for (int dc = diagonal ? -1 : 0; dc <= (diagonal ? 1 : 0); dc++) {
+                        if (c + dc >= 0 && c + dc < cols && grid.getChar(r - 1, c + dc) == ch) {
+                            int l = labels[i - cols + dc];
+                            if (label < 0) label = l;
+                            else sets.unite(label, l);
+                        }
+                    }
+                }
+                labels[i] = label < 0 ? sets.add() : label;
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * The number of regions.
+     * @return the number of regions
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * The labels of all cells. CAUTION: This is the internal array. Do not modify it.
+     * @return an array of length rows * cols that holds the label of the cell in row r and column c at index r * cols + c 
+     */
+    public int[] labels() {
+        return labels;
+    }
+
+    /**
+     * The label of a cell.
+     * @param p a valid location
+     * @return the number of the region containing p
+     */
+    public int label(Location p) {
+        return labels[p.row() * cols + p.col()];
+    }
+
+    /**
+     * The label of a cell.
+     * @param index a valid cell index of the grid, as returned by CharGrid.index
+     * @return the number of the region containing the cell
+     */
+    public int label(int index) {
+        return labels[grid.row(index) * cols + grid.col(index)];
+    }
+
+    /**
+     * The number of cells in a region.
+     * @param label a region number
+     * @return the area of the region
+     */
+    public int size(int label) {
+        return sizes[label];
+    }
+
+    /**
+     * The number of cell sides between a region and other regions or the grid boundary.
+     * @param label a region number
+     * @return the perimeter of the region
+     */
+    public int perimeter(int label) {
+        return perimeters[label];
+    }
+
+    /**
+     * The top left corner of the bounding box of a region.
+     * @param label a region number
+     * @return the location with the smallest row and column of any cell in the region
+     */
+    public Location min(int label) {
+        return new Location(minRows[label], minCols[label]);
+    }
+
+    /**
+     * The bottom right corner of the bounding box of a region.
+     * @param label a region number
+     * @return the location with the largest row and column of any cell in the region
+     */
+    public Location max(int label) {
+        return new Location(maxRows[label], maxCols[label]);
+    }
+}
@@ -0,0 +1,112 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * A 4-ary min-heap of the int items 0, 1, 2, ... with long keys, supporting decrease-key.
+ * The item range grows as needed.
+ */
+class IndexedHeap {
+    private static final int D = 4;
+    private int[] heap; // the items in heap order
+    private long[] keys; // the keys, indexed by heap position
+    private int[] positions; // the heap position of each item, or -1 if the item is not in the heap
+    private int size;
+
+    IndexedHeap(int capacity) {
+        capacity = Math.max(capacity, 1);
+        heap = new int[capacity];
+        keys = new long[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    boolean isEmpty() { return size == 0; }
+
+    int size() { return size; }
+
+    boolean contains(int item) {
+        return item < positions.length && positions[item] >= 0;
+    }
+
+    /**
+     * Yields the smallest key.
+     * @return the key of the item that pop will remove
+     */
+    long minKey() { return keys[0]; }
+
+    /**
+     * Inserts an item, or lowers its key if it is already present.
+     * @param item the item
+     * @param key the new key. If the item is present and key is not smaller than its current key, nothing happens.
+     * @return true if the item was inserted or its key was lowered
+     */
+    boolean push(int item, long key) {
+        if (item >= positions.length) {
+            int oldLength = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(item + 1, 2 * oldLength));
+            Arrays.fill(positions, oldLength, positions.length, -1);
+        }
+        int i = positions[item];
+        if (i < 0) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, 2 * size);
+                keys = Arrays.copyOf(keys, 2 * size);
+            }
+            i = size++;
+        } else if (keys[i] <= key) return false;
+        siftUp(i, item, key);
+        return true;
+    }
+
+    /**
+     * Removes the item with the smallest key.
+     * @return the removed item
+     */
+    int pop() {
+        int result = heap[0];
+        positions[result] = -1;
+        size--;
+        if (size > 0) siftDown(0, heap[size], keys[size]);
+        return result;
+    }
+
+    /**
+     * Removes all items.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) positions[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int i, int item, long key) {
+        while (i > 0) {
+            int p = (i - 1) / D;
+            if (keys[p] <= key) break;
+            place(i, heap[p], keys[p]);
+            i = p;
+        }
+        place(i, item, key);
+    }
+
+    private void siftDown(int i, int item, long key) {
+        while (true) {
+            int first = D * i + 1;
+            if (first >= size) break;
+            int c = first;
+            int last = Math.min(first + D, size);
+            for (int j = first + 1; j < last; j++)
+                if (keys[j] < keys[c]) c = j;
+            if (keys[c] >= key) break;
+            place(i, heap[c], keys[c]);
+            i = c;
+        }
+        place(i, item, key);
+    }
+
+    private void place(int i, int item, long key) {
+        heap[i] = item;
+        keys[i] = key;
+        positions[item] = i;
+    }
+}
@@ -0,0 +1,189 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * A directed graph in compressed sparse row form. The vertices are interned as the ints 0 ... size() - 1,
+ * and the neighbors of vertex v are targets()[offsets()[v]] ... targets()[offsets()[v + 1] - 1].
+ * Obtain instances with Graphs.compile.
+ * @param <V> The type of the graph's vertices
+ */
+public class IntGraph<V> {
+    private final List<V> vertices;
+    private final Map<V, Integer> ids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final long[] weights;
+    private IntGraph<V> transposed;
+
+    IntGraph(List<V> vertices, Map<V, Integer> ids, int[] offsets, int[] targets, long[] weights) {
+        this.vertices = vertices;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Compiles all vertices that are reachable from the given roots.
+     * @param <V> The type of the graph's vertices
+     * @param roots the starting vertices. They receive the ids 0, 1, 2, ... in iteration order.
+     * @param neighbors yields the set of neighbors for any vertex
+     * @param neighborDistances yields the cost of an edge joining two neighboring vertices, or null for an unweighted graph
+     * @return the compiled graph
+     */
+    static <V> IntGraph<V> compile(Collection<V> roots, Function<V, Set<V>> neighbors, ToLongBiFunction<V, V> neighborDistances) {
+        var vertices = new ArrayList<V>();
+        var ids = new HashMap<V, Integer>();
+        for (var r : roots)
+            if (ids.putIfAbsent(r, vertices.size()) == null) vertices.add(r);
+        var offsets = new int[16];
+        var targets = new int[16];
+        var weights = neighborDistances == null ? null : new long[16];
+        int edges = 0;
+        for (int v = 0; v < vertices.size(); v++) { // vertices grows as new vertices are discovered
+            var from = vertices.get(v);
+            for (var to : neighbors.apply(from)) {
+                var id = ids.putIfAbsent(to, vertices.size());
+                if (id == null) {
+                    id = vertices.size();
+                    vertices.add(to);
+                }
+                if (edges == targets.length) {
+                    targets = Arrays.copyOf(targets, 2 * edges);
+                    if (weights != null) weights = Arrays.copyOf(weights, 2 * edges);
+                }
+                targets[edges] = id;
+                if (weights != null) weights[edges] = neighborDistances.applyAsLong(from, to);
+                edges++;
+            }
+            if (v + 1 == offsets.length) offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+            offsets[v + 1] = edges;
+        }
+        return new IntGraph<>(vertices, ids,
+            Arrays.copyOf(offsets, vertices.size() + 1),
+            Arrays.copyOf(targets, edges),
+            weights == null ? null : Arrays.copyOf(weights, edges));
+    }
+
+    /**
+     * The number of vertices.
+     * @return the number of vertices
+     */
+    public int size() {
+        return vertices.size();
+    }
+
+    /**
+     * The number of edges.
+     * @return the number of edges
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Gets the id of a vertex.
+     * @param v a vertex
+     * @return the id of v, or -1 if v is not a vertex of this graph
+     */
+    public int id(V v) {
+        return ids.getOrDefault(v, -1);
+    }
+
+    /**
+     * Gets the vertex with a given id.
+     * @param id an id between 0 and size() - 1
+     * @return the vertex with that id
+     */
+    public V vertex(int id) {
+        return vertices.get(id);
+    }
+
+    /**
+     * The vertices, in the order of their ids.
+     * @return an unmodifiable list of the vertices
+     */
+    public List<V> vertices() {
+        return Collections.unmodifiableList(vertices);
+    }
+
+    /**
+     * The number of neighbors of a vertex
+     * @param v a vertex id
+     * @return the out-degree of v
+     */
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * The edge offsets. CAUTION: This is the internal array. Do not modify it.
+     * @return an array of length size() + 1 so that the edges leaving v have indexes offsets[v] ... offsets[v + 1] - 1
+     */
+    public int[] offsets() {
+        return offsets;
+    }
+
+    /**
+     * The edge targets. CAUTION: This is the internal array. Do not modify it.
+     * @return an array of length edgeCount() holding the target vertex id of each edge
+     */
+    public int[] targets() {
+        return targets;
+    }
+
+    /**
+     * The edge weights. CAUTION: This is the internal array. Do not modify it.
+     * @return an array of length edgeCount() holding the weight of each edge, or null if the graph is unweighted
+     */
+    public long[] weights() {
+        return weights;
+    }
+
+    /**
+     * The weight of an edge.
+     * @param e an edge index
+     * @return the weight of the edge, or 1 if the graph is unweighted
+     */
+    public long weight(int e) {
+        return weights == null ? 1 : weights[e];
+    }
+
+    /**
+     * The graph with all edges reversed. It is computed once and then cached.
+     * @return the graph with the same vertex ids that has an edge v → u with weight w for every edge u → v with weight w
+     */
+    public synchronized IntGraph<V> transposed() {
+        if (transposed == null) {
+            int n = size();
+            int[] reverseOffsets = new int[n + 1];
+            for (int t : targets) reverseOffsets[t + 1]++;
+            for (int v = 0; v < n; v++) reverseOffsets[v + 1] += reverseOffsets[v];
+            int[] next = Arrays.copyOf(reverseOffsets, n);
+            int[] reverseTargets = new int[targets.length];
+            long[] reverseWeights = weights == null ? null : new long[weights.length];
+            for (int u = 0; u < n; u++) {
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    int r = next[targets[e]]++;
+                    reverseTargets[r] = u;
+                    if (weights != null) reverseWeights[r] = weights[e];
+                }
+            }
+            transposed = new IntGraph<>(vertices, ids, reverseOffsets, reverseTargets, reverseWeights);
+            transposed.transposed = this;
+        }
+        return transposed;
+    }
+
+    /**
+     * Turns an array of vertex ids, as returned by the int-based methods of Graphs, into vertices.
+     * @param vs vertex ids
+     * @return the list of the corresponding vertices
+     */
+    public List<V> vertices(int[] vs) {
+        var result = new ArrayList<V>(vs.length);
+        for (int v : vs) result.add(vertices.get(v));
+        return result;
+    }
+}
@@ -0,0 +1,88 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * Disjoint sets of ints, with union by size and iterative path halving. 
+ * Elements can be added after construction.
+ */
+public class IntUnionFind implements DisjointSets {
+    private int[] parents;
+    private int[] sizes;
+    private int size;
+    private int setCount;
+
+    /**
+     * Constructs singleton sets {0}, {1}, ..., {n - 1}.
+     * @param n the number of elements
+     */
+    public IntUnionFind(int n) {
+        parents = new int[Math.max(n, 1)];
+        sizes = new int[parents.length];
+        for (int e = 0; e < n; e++) {
+            parents[e] = e;
+            sizes[e] = 1;
+        }
+        size = n;
+        setCount = n;
+    }
+
+    /**
+     * Adds a singleton set.
+     * @return the new element
+     */
+    public int add() {
+        if (size == parents.length) {
+            parents = Arrays.copyOf(parents, 2 * size);
+            sizes = Arrays.copyOf(sizes, 2 * size);
+        }
+        parents[size] = size;
+        sizes[size] = 1;
+        setCount++;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of disjoint sets.
+     * @return the number of sets
+     */
+    public int setCount() {
+        return setCount;
+    }
+
+    /**
+     * The size of the set containing an element.
+     * @param e an element
+     * @return the number of elements in the set containing e
+     */
+    public int setSize(int e) {
+        return sizes[find(e)];
+    }
+
+    public int find(int e) {
+        while (parents[e] != e) {
+            parents[e] = parents[parents[e]];
+            e = parents[e];
+        }
+        return e;
+    }
+
+    public boolean unite(int e, int f) {
+        int r = find(e);
+        int s = find(f);
+        if (r == s) return false;
+        if (sizes[r] < sizes[s]) {
+            int t = r;
+            r = s;
+            s = t;
+        }
+        parents[s] = r;
+        sizes[r] += sizes[s];
+        setCount--;
+        return true;
+    }
+}
@@ -0,0 +1,351 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * An integer linear program: Minimize c · x subject to linear equations, 0 ≤ x_j ≤ u_j, and all x_j integers.
+ * It is solved with branch and bound. The linear relaxations are solved with the simplex method 
+ * over exact fractions, with Bland's rule to avoid cycling, so that there are no rounding errors.
+ * Upper bounds, including those added by branching, become constraint rows x_j + s_j = u_j.
+ * For the small systems that come up in puzzles, this is fast enough, and much simpler than maintaining 
+ * bounds inside the simplex algorithm.
+ * <p>
+ * An equation whose coefficients are all nonnegative also bounds each variable with a positive coefficient.
+ * If every variable is bounded, the search is finite. Otherwise, it can branch forever, as with 2x - 2y = 1, 
+ * so the number of branch and bound nodes is limited.
+ */
+public class IntegerProgram {
+    private final int n;
+    private final List<long[]> rows = new ArrayList<>();
+    private final List<Long> rhs = new ArrayList<>();
+    private final long[] upperBounds;
+    private long[] objective;
+    private long nodeLimit = 1_000_000;
+
+    /**
+     * Constructs a program with no equations, unbounded nonnegative variables, and the objective
+     * of minimizing their sum.
+     * @param variables the number of variables
+     */
+    public IntegerProgram(int variables) {
+        n = variables;
+        upperBounds = new long[n];
+        Arrays.fill(upperBounds, Long.MAX_VALUE);
+        objective = new long[n];
+        Arrays.fill(objective, 1);
+    }
+
+    /**
+     * Adds the equation a_0 x_0 + a_1 x_1 + ... = b.
+     * @param coefficients the coefficients a_j, one for each variable
+     * @param b the right-hand side
+     * @return this object
+     */
+    public IntegerProgram addEquation(long[] coefficients, long b) {
+        if (coefficients.length != n) throw new IllegalArgumentException("Expected " + n + " coefficients");
+        rows.add(coefficients.clone());
+        rhs.add(b);
+        return this;
+    }
+
+    /**
+     * Sets an upper bound for a variable.
+     * @param j the index of the variable
+     * @param bound the largest value that x_j may take
+     * @return this object
+     */
+    public IntegerProgram upperBound(int j, long bound) {
+        upperBounds[j] = bound;
+        return this;
+    }
+
+    /**
+     * Sets the objective.
+     * @param coefficients the coefficients c_j of the objective c · x to minimize
+     * @return this object
+     */
+    public IntegerProgram objective(long[] coefficients) {
+        if (coefficients.length != n) throw new IllegalArgumentException("Expected " + n + " coefficients");
+        objective = coefficients.clone();
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of linear relaxations that minimize solves. The default is 1,000,000.
+     * @param limit the node limit
+     * @return this object
+     */
+    public IntegerProgram nodeLimit(long limit) {
+        nodeLimit = limit;
+        return this;
+    }
+
+    /**
+     * Solves the program.
+     * @return the values of the variables in an optimal solution, or null if there is no solution
+     * @throws ArithmeticException if the objective is unbounded
+     * @throws IllegalStateException if the node limit is reached before the search is complete 
+     */
+    public long[] minimize() {
+        long[] bounds = upperBounds.clone();
+        for (int i = 0; i < rows.size(); i++) {
+            long[] row = rows.get(i);
+            long b = rhs.get(i);
+            if (Arrays.stream(row).allMatch(a -> a >= 0)) {
+                if (b < 0) return null;
+                for (int j = 0; j < n; j++) if (row[j] > 0) bounds[j] = Math.min(bounds[j], b / row[j]);
+            }
+        }
+        long[] best = null;
+        BigInteger bestValue = null;
+        var nodes = new ArrayDeque<long[][]>(); // each node holds lower and upper bounds
+        nodes.push(new long[][] { new long[n], bounds });
+        long count = 0;
+        while (!nodes.isEmpty()) {
+            if (count++ == nodeLimit) throw new IllegalStateException("Node limit " + nodeLimit + " reached");
+            var node = nodes.pop();
+            long[] lo = node[0];
+            long[] hi = node[1];
+            Fraction[] x = relaxation(lo, hi);
+            if (x == null) continue;
+            var value = Fraction.ZERO;
+            for (int j = 0; j < n; j++) value = value.add(x[j].multiply(objective[j]));
+            // The objective of an integer solution is an integer
+            if (bestValue != null && value.ceil().compareTo(bestValue) >= 0) continue;
+            int branch = -1;
+            for (int j = 0; j < n && branch < 0; j++) if (!x[j].isInteger()) branch = j;
+            if (branch < 0) {
+                best = new long[n];
+                for (int j = 0; j < n; j++) best[j] = x[j].floor().longValueExact();
+                bestValue = value.floor();
+            } else {
+                long f = x[branch].floor().longValueExact();
+                long[] downHi = hi.clone();
+                downHi[branch] = f;
+                long[] upLo = lo.clone();
+                upLo[branch] = f + 1;
+                nodes.push(new long[][] { upLo, hi });
+                nodes.push(new long[][] { lo, downHi });
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Solves the linear relaxation with the given bounds.
+     * @return an optimal solution, or null if there is none
+     */
+    private Fraction[] relaxation(long[] lo, long[] hi) {
+        // Substitute x_j = lo_j + y_j with y_j ≥ 0
+        var bounded = new ArrayList<Integer>();
+        for (int j = 0; j < n; j++) {
+            if (hi[j] < lo[j]) return null;
+            if (hi[j] != Long.MAX_VALUE) bounded.add(j);
+        }
+        int m = rows.size();
+        int r = m + bounded.size();
+        // Columns: y_0 ... y_{n-1}, one slack per bound row, one artificial per equation
+        int slacks = n;
+        int artificials = n + bounded.size();
+        int columns = artificials + m;
+        var t = new Tableau(r, columns);
+        for (int i = 0; i < m; i++) {
+            long[] a = rows.get(i);
+            long b = rhs.get(i);
+            for (int j = 0; j < n; j++) b = Math.subtractExact(b, Math.multiplyExact(a[j], lo[j]));
+            int sign = b < 0 ? -1 : 1;
+            for (int j = 0; j < n; j++) t.a[i][j] = Fraction.of(sign * a[j]);
+            t.a[i][artificials + i] = Fraction.ONE;
+            t.a[i][columns] = Fraction.of(sign * b);
+            t.basis[i] = artificials + i;
+        }
+        for (int k = 0; k < bounded.size(); k++) {
+            int j = bounded.get(k);
+            t.a[m + k][j] = Fraction.ONE;
+            t.a[m + k][slacks + k] = Fraction.ONE;
+            t.a[m + k][columns] = Fraction.of(hi[j] - lo[j]);
+            t.basis[m + k] = slacks + k;
+        }
+        
+        // Phase 1: minimize the sum of the artificial variables
+        var phase1 = new Fraction[columns];
+        Arrays.fill(phase1, Fraction.ZERO);
+        for (int i = 0; i < m; i++) phase1[artificials + i] = Fraction.ONE;
+        t.setObjective(phase1);
+        t.optimize(columns);
+        if (t.objectiveValue().signum() != 0) return null;
+        // Drive the artificial variables, which are all zero, out of the basis
+        for (int i = 0; i < r; i++) {
+            if (t.basis[i] >= artificials) {
+                for (int j = 0; j < artificials; j++) {
+                    if (t.a[i][j].signum() != 0) {
+                        t.pivot(i, j);
+                        break;
+                    }
+                }
+                // Otherwise the equation is redundant, and the artificial variable stays at zero
+            }
+        }
+        
+        // Phase 2: minimize the objective, never letting artificial variables enter
+        var phase2 = new Fraction[columns];
+        Arrays.fill(phase2, Fraction.ZERO);
+        for (int j = 0; j < n; j++) phase2[j] = Fraction.of(objective[j]);
+        t.setObjective(phase2);
+        if (!t.optimize(artificials)) throw new ArithmeticException("Unbounded objective");
+        var x = new Fraction[n];
+        for (int j = 0; j < n; j++) x[j] = Fraction.of(lo[j]);
+        for (int i = 0; i < r; i++)
+            if (t.basis[i] < n) x[t.basis[i]] = x[t.basis[i]].add(t.a[i][columns]);
+        return x;
+    }
+
+    /**
+     * A simplex tableau for minimization. Row rows holds the reduced costs, and its last entry 
+     * is the negative of the objective value. Column columns holds the right-hand sides.
+     */
+    private static class Tableau {
+        final int rows;
+        final int columns;
+        final Fraction[][] a;
+        final int[] basis;
+
+        Tableau(int rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+            a = new Fraction[rows + 1][columns + 1];
+            for (var row : a) Arrays.fill(row, Fraction.ZERO);
+            basis = new int[rows];
+        }
+
+        void setObjective(Fraction[] c) {
+            var z = a[rows];
+            for (int j = 0; j < columns; j++) z[j] = c[j];
+            z[columns] = Fraction.ZERO;
+            for (int i = 0; i < rows; i++) {
+                var cb = c[basis[i]];
+                if (cb.signum() != 0)
+                    for (int j = 0; j <= columns; j++) z[j] = z[j].subtract(cb.multiply(a[i][j]));
+            }
+        }
+
+        Fraction objectiveValue() {
+            return a[rows][columns].negate();
+        }
+
+        /**
+         * Pivots until the objective is minimal, using Bland's rule.
+         * @param entering only the columns before this one may enter the basis
+         * @return true if the minimum was found, false if the objective is unbounded
+         */
+        boolean optimize(int entering) {
+            while (true) {
+                int e = -1;
+                for (int j = 0; j < entering && e < 0; j++) if (a[rows][j].signum() < 0) e = j;
+                if (e < 0) return true;
+                int leaving = -1;
+                Fraction ratio = null;
+                for (int i = 0; i < rows; i++) {
+                    if (a[i][e].signum() > 0) {
+                        var q = a[i][columns].divide(a[i][e]);
+                        int c = ratio == null ? -1 : q.compareTo(ratio);
+                        if (c < 0 || c == 0 && basis[i] < basis[leaving]) {
+                            leaving = i;
+                            ratio = q;
+                        }
+                    }
+                }
+                if (leaving < 0) return false;
+                pivot(leaving, e);
+            }
+        }
+
+        void pivot(int p, int e) {
+            var row = a[p];
+            var inverse = row[e].inverse();
+            for (int j = 0; j <= columns; j++) row[j] = row[j].multiply(inverse);
+            for (int i = 0; i <= rows; i++) {
+                var factor = a[i][e];
+                if (i != p && factor.signum() != 0)
+                    for (int j = 0; j <= columns; j++) 
+                        if (row[j].signum() != 0) a[i][j] = a[i][j].subtract(factor.multiply(row[j]));
+            }
+            basis[p] = e;
+        }
+    }
+
+    /**
+     * An exact fraction in lowest terms with a positive denominator.
+     */
+    private record Fraction(BigInteger num, BigInteger den) implements Comparable<Fraction> {
+        static final Fraction ZERO = new Fraction(BigInteger.ZERO, BigInteger.ONE);
+        static final Fraction ONE = new Fraction(BigInteger.ONE, BigInteger.ONE);
+
+        static Fraction of(long n) {
+            return n == 0 ? ZERO : n == 1 ? ONE : new Fraction(BigInteger.valueOf(n), BigInteger.ONE);
+        }
+
+        static Fraction of(BigInteger num, BigInteger den) {
+            if (den.signum() < 0) {
+                num = num.negate();
+                den = den.negate();
+            }
+            var g = num.gcd(den);
+            if (!g.equals(BigInteger.ONE)) {
+                num = num.divide(g);
+                den = den.divide(g);
+            }
+            return new Fraction(num, den);
+        }
+
+        Fraction add(Fraction other) {
+            if (den.equals(other.den)) return of(num.add(other.num), den);
+            return of(num.multiply(other.den).add(other.num.multiply(den)), den.multiply(other.den));
+        }
+
+        Fraction subtract(Fraction other) {
+            return add(other.negate());
+        }
+
+        Fraction multiply(Fraction other) {
+            return of(num.multiply(other.num), den.multiply(other.den));
+        }
+
+        Fraction multiply(long n) {
+            return of(num.multiply(BigInteger.valueOf(n)), den);
+        }
+
+        Fraction divide(Fraction other) {
+            return of(num.multiply(other.den), den.multiply(other.num));
+        }
+
+        Fraction negate() {
+            return new Fraction(num.negate(), den);
+        }
+
+        Fraction inverse() {
+            return of(den, num);
+        }
+
+        int signum() {
+            return num.signum();
+        }
+
+        boolean isInteger() {
+            return den.equals(BigInteger.ONE);
+        }
+
+        BigInteger floor() {
+            var qr = num.divideAndRemainder(den);
+            return qr[1].signum() < 0 ? qr[0].subtract(BigInteger.ONE) : qr[0];
+        }
+
+        BigInteger ceil() {
+            return isInteger() ? num : floor().add(BigInteger.ONE);
+        }
+
+        public int compareTo(Fraction other) {
+            return num.multiply(other.den).compareTo(other.num.multiply(den));
+        }
+    }
+}
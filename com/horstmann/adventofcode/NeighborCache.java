@@ -0,0 +1,149 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * A neighbor function that remembers the results of another one, for implicit graphs whose neighbors
+ * are expensive to compute and that are searched repeatedly. When the capacity is reached, the least
+ * recently used vertices are evicted. In concurrent mode, the cache is split into independently locked
+ * segments so that it can be used by parallel searches. A miss computes the neighbors without holding 
+ * a lock, so concurrent misses for the same vertex may compute them more than once.
+ * Obtain instances with Graphs.cached.
+ * @param <V> The type of the graph's vertices
+ */
+public class NeighborCache<V> implements Function<V, Set<V>> {
+    private static final int SEGMENTS = 16;
+    
+    private final Function<V, Set<V>> neighbors;
+    private final List<Segment<V>> segments;
+    private final boolean concurrent;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    NeighborCache(Function<V, Set<V>> neighbors, int capacity, boolean concurrent) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity " + capacity);
+        this.neighbors = neighbors;
+        this.concurrent = concurrent;
+        int n = concurrent ? Math.min(SEGMENTS, capacity) : 1;
+        var segments = new ArrayList<Segment<V>>(n);
+        for (int i = 0; i < n; i++) segments.add(new Segment<>((capacity + n - 1 - i) / n));
+        this.segments = List.copyOf(segments);
+    }
+
+    /**
+     * A part of the cache that holds its vertices in access order, so that the first one is
+     * the least recently used.
+     */
+    private static class Segment<V> {
+        private final LinkedHashMap<V, Set<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+        private final int capacity;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Yields the neighbors of a vertex, computing them only if they are not cached.
+     * @param v a vertex
+     * @return the neighbors of v
+     */
+    public Set<V> apply(V v) {
+        int h = v.hashCode();
+        var segment = segments.get(Math.floorMod(h ^ h >>> 16, segments.size()));
+        Set<V> result;
+        if (concurrent) {
+            synchronized (segment) { result = segment.map.get(v); }
+        } else {
+            result = segment.map.get(v);
+        }
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+        result = neighbors.apply(v);
+        if (concurrent) {
+            synchronized (segment) { put(segment, v, result); }
+        } else {
+            put(segment, v, result);
+        }
+        return result;
+    }
+
+    private void put(Segment<V> segment, V v, Set<V> result) {
+        segment.map.put(v, result);
+        if (segment.map.size() > segment.capacity) {
+            segment.map.pollFirstEntry();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * The number of calls to apply that were answered from the cache.
+     * @return the hit count
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of calls to apply that computed the neighbors.
+     * @return the miss count
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of vertices that were removed because the capacity was reached.
+     * @return the eviction count
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * The fraction of calls to apply that were answered from the cache.
+     * @return the hit rate, or 0 if apply has not been called
+     */
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * The number of cached vertices.
+     * @return the size of the cache
+     */
+    public int size() {
+        int result = 0;
+        for (var segment : segments) {
+            if (concurrent) {
+                synchronized (segment) { result += segment.map.size(); }
+            } else {
+                result += segment.map.size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all cached vertices. The statistics are not reset.
+     */
+    public void clear() {
+        for (var segment : segments) {
+            if (concurrent) {
+                synchronized (segment) { segment.map.clear(); }
+            } else {
+                segment.map.clear();
+            }
+        }
+    }
+
+    public String toString() {
+        return "NeighborCache[size=%d, hits=%d, misses=%d, evictions=%d]".formatted(size(), hitCount(), missCount(), evictionCount());
+    }
+}
@@ -2,11 +2,235 @@ package com.horstmann.adventofcode;
 import module java.base;
 
 public class OS {
+    /**
+     * Runs a command and collects its output. Standard input is written and standard error 
+     * is drained on virtual threads while standard output is read, so that the process cannot block 
+     * on a full pipe.
+     * @param command the command and its arguments
+     * @param stdin the standard input for the process
+     * @return the standard output of the process
+     */
     public static String run(List<String> command, String stdin) throws IOException, InterruptedException {
+        try {
+            return run(command, stdin, null);
+        } catch (TimeoutException ex) { // Can't happen without a timeout
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * Runs a command and collects its output. 
+     * @param command the command and its arguments
+     * @param stdin the standard input for the process
+     * @param timeout the maximum time to wait for the process, or null to wait indefinitely
+     * @return the standard output of the process
+     * @throws TimeoutException if the process didn't finish in time. It is then destroyed.
+     */
+    public static String run(List<String> command, String stdin, Duration timeout) throws IOException, InterruptedException, TimeoutException {
+        var builder = new StringBuilder();
+        run(command, stdin, line -> builder.append(line).append("\n"), timeout);
+        return builder.toString();
+    }
+
+    /**
+     * Runs a command and passes each line of its output to an action as soon as it is available. 
+     * @param command the command and its arguments
+     * @param stdin the standard input for the process
+     * @param lines receives the lines of the standard output of the process
+     * @param timeout the maximum time to wait for the process, or null to wait indefinitely
+     * @return the exit value of the process
+     * @throws TimeoutException if the process didn't finish in time. It is then destroyed.
+     */
+    public static int run(List<String> command, String stdin, Consumer<String> lines, Duration timeout) 
+            throws IOException, InterruptedException, TimeoutException {
         var process = new ProcessBuilder(command).start();
-        process.outputWriter().write(stdin);
-        process.outputWriter().close();
-        process.waitFor();
-        return new String(process.getInputStream().readAllBytes());        
+        var writer = Thread.startVirtualThread(() -> {
+            try (var out = process.outputWriter()) {
+                out.write(stdin);
+            } catch (IOException _) {
+                // The process closed its input
+            }
+        });
+        Thread.startVirtualThread(() -> drain(process.getErrorStream()));
+        var reader = Thread.startVirtualThread(() -> {
+            try (var in = process.inputReader()) {
+                in.lines().forEach(lines);
+            } catch (IOException | UncheckedIOException _) {
+                // The process was destroyed
+            }
+        });
+        if (timeout == null) process.waitFor();
+        else if (!process.waitFor(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            process.destroyForcibly();
+            throw new TimeoutException(command + " timed out after " + timeout);
+        }
+        writer.join();
+        reader.join();
+        return process.exitValue();
+    }
+
+    private static void drain(InputStream in) {
+        try (in) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException _) {
+            // The process was destroyed
+        }
+    }
+
+    /**
+     * A long-lived interactive process, such as z3 -in, that answers one query after another.
+     * After each query, a sentinel command is sent whose output marks the end of the answer.
+     * Standard error is merged into standard output, so that error messages are part of the answer.
+     * Sessions are not thread safe. Use a SessionPool to share them among threads.
+     */
+    public static class Session implements AutoCloseable {
+        private record Line(String text) {}
+        private static final Line EOF = new Line(null); // marks the end of the output
+        private final Process process;
+        private final Writer writer;
+        private final BlockingQueue<Line> lines = new LinkedBlockingQueue<>();
+        private final String sentinelCommand;
+        private final String sentinelOutput;
+
+        /**
+         * Starts a session.
+         * @param command the command and its arguments
+         * @param sentinelCommand a command that makes the process print sentinelOutput, such as (echo "done") for z3
+         * @param sentinelOutput the line that marks the end of an answer
+         */
+        public Session(List<String> command, String sentinelCommand, String sentinelOutput) throws IOException {
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            writer = process.outputWriter();
+            this.sentinelCommand = sentinelCommand;
+            this.sentinelOutput = sentinelOutput;
+            Thread.startVirtualThread(() -> {
+                try (var in = process.inputReader()) {
+                    String line;
+                    while ((line = in.readLine()) != null) lines.add(new Line(line));
+                } catch (IOException _) {
+                    // The process was destroyed
+                }
+                lines.add(EOF);
+            });
+        }
+
+        /**
+         * Sends a query and waits for the answer.
+         * @param input the query
+         * @param timeout the maximum time to wait for the answer, or null to wait indefinitely
+         * @return the lines that the process printed in response, up to the sentinel output
+         * @throws IOException if the process has terminated. The message contains the output of the query so far.
+         * @throws TimeoutException if the answer didn't arrive in time. The session is then closed.
+         */
+        public String query(CharSequence input, Duration timeout) throws IOException, InterruptedException, TimeoutException {
+            writer.append(input).append("\n").append(sentinelCommand).append("\n").flush();
+            long deadline = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+            var result = new StringBuilder();
+            while (true) {
+                Line line;
+                if (timeout == null) line = lines.take();
+                else {
+                    line = lines.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (line == null) {
+                        close();
+                        throw new TimeoutException("No answer after " + timeout);
+                    }
+                }
+                if (line == EOF) {
+                    lines.add(EOF);
+                    throw new IOException("Process terminated with exit value " + process.waitFor() + "\n" + result);
+                }
+                if (line.text().equals(sentinelOutput)) return result.toString();
+                result.append(line.text()).append("\n");
+            }
+        }
+
+        /**
+         * Checks whether the process is still running.
+         * @return true if the process is alive
+         */
+        public boolean isAlive() {
+            return process.isAlive();
+        }
+
+        /**
+         * Terminates the process.
+         */
+        public void close() {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * A pool of sessions that can be shared among threads, for example the workers of a Batch.
+     * Sessions are started when they are first needed, and replaced when they fail.
+     */
+    public static class SessionPool implements AutoCloseable {
+        /**
+         * Starts sessions for a pool.
+         */
+        @FunctionalInterface
+        public interface Factory {
+            /**
+             * Starts a session.
+             * @return the session
+             * @throws IOException if the process can't be started
+             */
+            Session start() throws IOException;
+        }
+
+        private final Factory factory;
+        private final BlockingQueue<Session> idle = new LinkedBlockingQueue<>();
+        private final Semaphore available;
+        private final Set<Session> all = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Constructs a pool.
+         * @param size the maximum number of sessions
+         * @param factory starts a session
+         */
+        public SessionPool(int size, Factory factory) {
+            this.factory = factory;
+            available = new Semaphore(size);
+        }
+
+        /**
+         * Sends a query to an idle session, waiting for one if all sessions are busy.
+         * @param input the query
+         * @param timeout the maximum time to wait for the answer, or null to wait indefinitely
+         * @return the lines that the process printed in response, up to the sentinel output
+         * @throws IOException if a session can't be started or has terminated
+         * @throws TimeoutException if the answer didn't arrive in time
+         */
+        public String query(CharSequence input, Duration timeout) throws IOException, InterruptedException, TimeoutException {
+            available.acquire();
+            Session session = idle.poll();
+            try {
+                if (session == null) {
+                    session = factory.start();
+                    all.add(session);
+                }
+                var result = session.query(input, timeout);
+                idle.add(session);
+                return result;
+            } catch (Exception ex) {
+                if (session != null) {
+                    session.close();
+                    all.remove(session);
+                }
+                throw ex;
+            } finally {
+                available.release();
+            }
+        }
+
+        /**
+         * Terminates all sessions.
+         */
+        public void close() {
+            for (var session : all) session.close();
+            all.clear();
+            idle.clear();
+        }
     }
 }
@@ -0,0 +1,204 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * All shortest paths from a root, computed in a single pass of Dijkstra's algorithm. Instead of 
+ * the paths themselves, it holds the DAG of the edges that lie on shortest paths, together with 
+ * the number of shortest paths to each vertex. Edge weights must be positive, so that the order 
+ * in which Dijkstra's algorithm settles the vertices is a topological order of that DAG.
+ * Obtain instances with Graphs.shortestPaths.
+ * @param <V> The type of the graph's vertices
+ */
+public class ShortestPaths<V> {
+    private final IntGraph<V> dag;
+    private final long[] costs; // indexed by dag id
+    private final long[] counts; // indexed by dag id, -1 if the count overflows a long
+    private BigInteger[] bigCounts; // computed when needed
+
+    /**
+     * Computes all shortest paths in a compiled graph.
+     * @param graph the graph. If it is unweighted, all edges have cost 1.
+     * @param root the id of the starting vertex
+     * @throws IllegalArgumentException if a reachable edge has a weight that is not positive
+     */
+    ShortestPaths(IntGraph<V> graph, int root) {
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        long[] dist = new long[n];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        dist[root] = 0;
+        // The predecessors of v are predVertices[p] for p = firstPreds[v], nextPreds[p], ... until -1.
+        // Each edge is relaxed once, so there are at most as many entries as edges.
+        int[] firstPreds = new int[n];
+        Arrays.fill(firstPreds, -1);
+        int[] nextPreds = new int[graph.edgeCount()];
+        int[] predVertices = new int[graph.edgeCount()];
+        int predCount = 0;
+        int[] order = new int[n]; // the settled vertices
+        int settledCount = 0;
+        var q = new IndexedHeap(n);
+        q.push(root, 0);
+        while (!q.isEmpty()) {
+            int s = q.pop();
+            order[settledCount++] = s;
+            long d = dist[s];
+            for (int e = offsets[s]; e < offsets[s + 1]; e++) {
+                long w = graph.weight(e);
+                if (w <= 0) throw new IllegalArgumentException("Weight " + w + " of edge " + graph.vertex(s) + " -> " + graph.vertex(targets[e]));
+                int t = targets[e];
+                long nd = d + w;
+                if (nd < dist[t]) {
+                    dist[t] = nd;
+                    q.push(t, nd);
+                    firstPreds[t] = -1;
+                }
+                if (nd == dist[t]) {
+                    predVertices[predCount] = s;
+                    nextPreds[predCount] = firstPreds[t];
+                    firstPreds[t] = predCount;
+                    predCount++;
+                }
+            }
+        }
+
+        // The DAG has the settled vertices, with ids in the order in which they were settled
+        int[] dagIds = new int[n];
+        Arrays.fill(dagIds, -1);
+        var vertices = new ArrayList<V>(settledCount);
+        var ids = new HashMap<V, Integer>();
+        costs = new long[settledCount];
+        for (int i = 0; i < settledCount; i++) {
+            dagIds[order[i]] = i;
+            vertices.add(graph.vertex(order[i]));
+            ids.put(graph.vertex(order[i]), i);
+            costs[i] = dist[order[i]];
+        }
+        int[] dagOffsets = new int[settledCount + 1];
+        for (int i = 0; i < settledCount; i++)
+            for (int p = firstPreds[order[i]]; p >= 0; p = nextPreds[p]) dagOffsets[dagIds[predVertices[p]] + 1]++;
+        for (int i = 0; i < settledCount; i++) dagOffsets[i + 1] += dagOffsets[i];
+        int[] next = Arrays.copyOf(dagOffsets, settledCount);
+        int[] dagTargets = new int[dagOffsets[settledCount]];
+        long[] dagWeights = graph.weights() == null ? null : new long[dagTargets.length];
+        for (int i = 0; i < settledCount; i++) {
+            for (int p = firstPreds[order[i]]; p >= 0; p = nextPreds[p]) {
+                int j = dagIds[predVertices[p]];
+                if (dagWeights != null) dagWeights[next[j]] = costs[i] - costs[j];
+                dagTargets[next[j]++] = i;
+            }
+        }
+        dag = new IntGraph<>(vertices, ids, dagOffsets, dagTargets, dagWeights);
+
+        counts = new long[settledCount];
+        if (settledCount > 0) counts[0] = 1;
+        for (int i = 0; i < settledCount; i++) {
+            for (int e = dagOffsets[i]; e < dagOffsets[i + 1]; e++) {
+                int j = dagTargets[e];
+                if (counts[i] < 0 || counts[j] < 0) counts[j] = -1;
+                else {
+                    long sum = counts[i] + counts[j];
+                    counts[j] = sum < 0 ? -1 : sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * The DAG of all edges on shortest paths from the root. The vertex ids are in the order in which 
+     * the vertices were settled, which is a topological order. The root has id 0.
+     * @return the DAG, with the same weights as the original graph
+     */
+    public IntGraph<V> dag() {
+        return dag;
+    }
+
+    /**
+     * The cost of the shortest paths to a vertex.
+     * @param v a vertex
+     * @return the minimum cost of reaching v, or Long.MAX_VALUE if v is not reachable
+     */
+    public long cost(V v) {
+        int i = dag.id(v);
+        return i < 0 ? Long.MAX_VALUE : costs[i];
+    }
+
+    /**
+     * The number of shortest paths to a vertex.
+     * @param v a vertex
+     * @return the number of shortest paths from the root to v, or 0 if v is not reachable
+     * @throws ArithmeticException if the count overflows a long
+     */
+    public long count(V v) {
+        int i = dag.id(v);
+        if (i < 0) return 0;
+        if (counts[i] < 0) throw new ArithmeticException("Path count overflow");
+        return counts[i];
+    }
+
+    /**
+     * The number of shortest paths to a vertex, without overflow.
+     * @param v a vertex
+     * @return the number of shortest paths from the root to v, or 0 if v is not reachable
+     */
+    public BigInteger bigCount(V v) {
+        int i = dag.id(v);
+        if (i < 0) return BigInteger.ZERO;
+        if (counts[i] >= 0) return BigInteger.valueOf(counts[i]);
+        return bigCounts()[i];
+    }
+
+    /**
+     * Chooses a shortest path to a vertex uniformly at random, without enumerating the paths.
+     * @param v a vertex
+     * @param random the random number generator
+     * @return a path that starts with the root and ends at v, or the empty list if v is not reachable
+     */
+    public List<V> randomPath(V v, Random random) {
+        var path = new ArrayList<V>();
+        int i = dag.id(v);
+        if (i < 0) return path;
+        var reverse = dag.transposed();
+        int[] offsets = reverse.offsets();
+        int[] targets = reverse.targets();
+        path.add(v);
+        while (i != 0) {
+            // Each predecessor is chosen with probability proportional to the number of paths through it
+            int chosen = -1;
+            if (counts[i] >= 0) {
+                long r = random.nextLong(counts[i]);
+                for (int e = offsets[i]; chosen < 0; e++) {
+                    r -= counts[targets[e]];
+                    if (r < 0) chosen = targets[e];
+                }
+            } else {
+                BigInteger[] big = bigCounts();
+                BigInteger r;
+                do r = new BigInteger(big[i].bitLength(), random); while (r.compareTo(big[i]) >= 0);
+                for (int e = offsets[i]; chosen < 0; e++) {
+                    r = r.subtract(big[targets[e]]);
+                    if (r.signum() < 0) chosen = targets[e];
+                }
+            }
+            i = chosen;
+            path.add(dag.vertex(i));
+        }
+        return path.reversed();
+    }
+
+    private BigInteger[] bigCounts() {
+        if (bigCounts == null) {
+            int n = dag.size();
+            int[] offsets = dag.offsets();
+            int[] targets = dag.targets();
+            var result = new BigInteger[n];
+            Arrays.fill(result, BigInteger.ZERO);
+            if (n > 0) result[0] = BigInteger.ONE;
+            for (int i = 0; i < n; i++)
+                for (int e = offsets[i]; e < offsets[i + 1]; e++) result[targets[e]] = result[targets[e]].add(result[i]);
+            bigCounts = result;
+        }
+        return bigCounts;
+    }
+}
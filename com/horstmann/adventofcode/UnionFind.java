@@ -0,0 +1,100 @@
+package com.horstmann.adventofcode;
+
+import module java.base;
+
+/**
+ * Disjoint sets of arbitrary elements, on top of disjoint sets of ints.
+ * @param <V> The type of the elements
+ */
+public class UnionFind<V> {
+    private final Map<V, Integer> ids;
+    private final List<V> elements;
+    private final DisjointSets sets;
+
+    /**
+     * Constructs an empty union-find structure, backed by an IntUnionFind. Add elements with singleton.
+     */
+    public UnionFind() {
+        ids = new HashMap<>();
+        elements = new ArrayList<>();
+        sets = new IntUnionFind(0);
+    }
+
+    /**
+     * Constructs singleton sets for a fixed collection of elements.
+     * @param elements the elements
+     * @param factory yields the int disjoint sets for a given number of elements, such as IntUnionFind::new 
+     * or ConcurrentUnionFind::new 
+     */
+    public UnionFind(Collection<V> elements, IntFunction<? extends DisjointSets> factory) {
+        ids = new HashMap<>();
+        this.elements = new ArrayList<>();
+        for (var e : elements) 
+            if (ids.putIfAbsent(e, this.elements.size()) == null) this.elements.add(e);
+        sets = factory.apply(this.elements.size());
+    }
+
+    /**
+     * Adds a singleton set holding the given element if it is not already present in one of the sets. 
+     * @param element the element to add
+     * @return true if a new singleton set was created, false if the element was already present
+     * @throws UnsupportedOperationException if the element is not present and this structure has a fixed set of elements
+     */
+    public boolean singleton(V element) {
+        if (ids.containsKey(element)) return false;
+        if (!(sets instanceof IntUnionFind growable)) throw new UnsupportedOperationException("Fixed elements");
+        ids.put(element, growable.add());
+        elements.add(element);
+        return true;
+    }
+    
+    /**
+     * Unites the sets containing the given elements. If the backing sets are concurrent, 
+     * multiple threads may call this method at the same time.
+     * @param e an element in one of the sets
+     * @param f another element in one of the sets
+     * @return true if e and f belonged to different sets which have been united,
+     * false if e and f already belonged to the same set
+     */
+    public boolean unite(V e, V f) {
+        return sets.unite(id(e), id(f));
+    }
+
+    /**
+     * Checks whether two elements belong to the same set.
+     * @param e an element
+     * @param f another element
+     * @return true if e and f belong to the same set
+     */
+    public boolean connected(V e, V f) {
+        return sets.connected(id(e), id(f));
+    }
+
+    /**
+     * The backing disjoint sets of ints.
+     * @return the int disjoint sets. The elements are numbered in the order in which they were added.
+     */
+    public DisjointSets disjointSets() {
+        return sets;
+    }
+    
+    /**
+     * The disjoint sets that result from the singleton and unite operations.
+     * @return a collection of the sets
+     */
+    public Collection<Set<V>> sets() {
+        int[] labels = sets.labels();
+        var result = new ArrayList<Set<V>>();
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] == result.size()) result.add(new HashSet<>());
+            result.get(labels[i]).add(elements.get(i));
+        }
+        return result;
+    }
+
+    private int id(V e) {
+        Integer i = ids.get(e);
+        if (i == null) throw new NoSuchElementException();
+        return i;
+    }
+}